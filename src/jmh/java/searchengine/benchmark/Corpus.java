@@ -0,0 +1,58 @@
+package searchengine.benchmark;
+
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import searchengine.config.AppConfigProperties;
+import searchengine.sitecrawling.AnalysisCache;
+import searchengine.sitecrawling.LemmaExtraction;
+import searchengine.sitecrawling.MorphologyCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Неизменный корпус страниц для бенчмарков: src/jmh/resources/corpus/{язык}-{номер}.html.
+ */
+public final class Corpus {
+    public static final String BASE_URL = "https://example.org/";
+    private static final int PAGES_PER_LANGUAGE = 2;
+
+    private Corpus() {
+    }
+
+    public static List<String> load(String language) {
+        List<String> pages = new ArrayList<>();
+        for (int i = 1; i <= PAGES_PER_LANGUAGE; i++) {
+            String name = "/corpus/" + language + "-" + i + ".html";
+            try (InputStream in = Corpus.class.getResourceAsStream(name)) {
+                if (in == null) {
+                    throw new IllegalStateException("Нет файла корпуса " + name);
+                }
+                pages.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return pages;
+    }
+
+    public static String query(String language) {
+        return language.equals("ru") ? "выставка живописи художника" : "painting exhibition artists";
+    }
+
+    /**
+     * cacheSize = 0 оставляет кэш морфологии почти пустым - так измеряется стоимость самих словарей.
+     * Дисковый кэш анализа отключён, иначе повторные итерации измеряли бы только чтение файлов.
+     */
+    public static LemmaExtraction lemmaExtraction(int cacheSize) throws IOException {
+        AppConfigProperties properties = new AppConfigProperties();
+        properties.getMorphology().setCacheSize(cacheSize);
+        properties.getAnalysisCache().setEnabled(false);
+        return new LemmaExtraction(new RussianLuceneMorphology(), new EnglishLuceneMorphology(),
+                new MorphologyCache(properties), new AnalysisCache(properties));
+    }
+}
@@ -0,0 +1,210 @@
+package searchengine.repositories;
+
+import org.openjdk.jmh.annotations.*;
+import searchengine.model.Page;
+
+import java.sql.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка запросов поиска и индексации до и после индексов из db/migration на сгенерированных данных:
+ * 2 сайта, 20 000 страниц, 50 000 лемм, 1 000 000 индексов. Данные пишутся в отдельную базу jdbcUrl
+ * один раз и переиспользуются; schema=before - только индексы внешних ключей, как создавал Hibernate,
+ * schema=after - уникальный (site_id, lemma), (lemma_id, page_id, rank) и (site_id, path_hash).
+ * Запуск: mvn -Pjmh compile exec:exec -Djmh.args="SchemaIndexBenchmark -p password=..."
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemaIndexBenchmark {
+    private static final int SITES = 2;
+    private static final int PAGES_PER_SITE = 10_000;
+    private static final int LEMMAS_PER_SITE = 25_000;
+    private static final int POSTINGS_PER_PAGE = 50;
+    private static final int CHUNK = 5_000;
+
+    @Param({"jdbc:mysql://localhost:3306/search_engine_bench?createDatabaseIfNotExist=true&rewriteBatchedStatements=true"})
+    public String jdbcUrl;
+
+    @Param({"root"})
+    public String user;
+
+    @Param({""})
+    public String password;
+
+    @Param({"before", "after"})
+    public String schema;
+
+    private Connection connection;
+    private PreparedStatement lemmaBySite;
+    private PreparedStatement postingsByLemmas;
+    private PreparedStatement pageByPath;
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(jdbcUrl, user, password);
+        try (Statement statement = connection.createStatement()) {
+            createTables(statement);
+            if (count(statement, "indexes") < (long) SITES * PAGES_PER_SITE * POSTINGS_PER_PAGE) {
+                generate(statement);
+            }
+            dropIndexes(statement);
+            if (schema.equals("after")) {
+                statement.execute("ALTER TABLE lemma ADD UNIQUE KEY uk_lemma_site_lemma (site_id, lemma)");
+                statement.execute("CREATE INDEX idx_indexes_lemma_page_rank ON indexes (lemma_id, page_id, `rank`)");
+                statement.execute("CREATE INDEX idx_page_site_path_hash ON page (site_id, path_hash)");
+            }
+            statement.execute("ANALYZE TABLE page, lemma, indexes");
+        }
+        lemmaBySite = connection.prepareStatement("SELECT id, frequency FROM lemma WHERE lemma = ? AND site_id = ?");
+        postingsByLemmas = connection.prepareStatement("SELECT page_id, `rank` FROM indexes WHERE lemma_id IN (?, ?, ?)");
+        pageByPath = connection.prepareStatement("SELECT id FROM page WHERE site_id = ? AND path_hash = ? AND path = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * LemmaRepository.findByLemmaToSiteId
+     */
+    @Benchmark
+    public int lemmaBySite() throws SQLException {
+        lemmaBySite.setString(1, lemmaText(random.nextInt(LEMMAS_PER_SITE)));
+        lemmaBySite.setInt(2, 1 + random.nextInt(SITES));
+        return rows(lemmaBySite);
+    }
+
+    /**
+     * IndexRepository.findRanksByLemmaIdIn для запроса из трёх лемм
+     */
+    @Benchmark
+    public int postingsByLemmas() throws SQLException {
+        for (int i = 1; i <= 3; i++) {
+            postingsByLemmas.setInt(i, 1 + random.nextInt(SITES * LEMMAS_PER_SITE));
+        }
+        return rows(postingsByLemmas);
+    }
+
+    /**
+     * PageRepository.existsBySiteAndPath
+     */
+    @Benchmark
+    public int pageByPath() throws SQLException {
+        String path = pagePath(random.nextInt(PAGES_PER_SITE));
+        pageByPath.setInt(1, 1 + random.nextInt(SITES));
+        pageByPath.setString(2, Page.hashPath(path));
+        pageByPath.setString(3, path);
+        return rows(pageByPath);
+    }
+
+    private static int rows(PreparedStatement statement) throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static void createTables(Statement statement) throws SQLException {
+        statement.execute("CREATE TABLE IF NOT EXISTS page (id INT PRIMARY KEY, site_id INT NOT NULL, path TEXT, path_hash VARCHAR(64), " +
+                "code INT, KEY fk_page_site (site_id))");
+        statement.execute("CREATE TABLE IF NOT EXISTS lemma (id INT PRIMARY KEY, site_id INT NOT NULL, lemma VARCHAR(255), frequency INT, " +
+                "KEY fk_lemma_site (site_id))");
+        statement.execute("CREATE TABLE IF NOT EXISTS indexes (id INT AUTO_INCREMENT PRIMARY KEY, page_id INT NOT NULL, lemma_id INT NOT NULL, " +
+                "`rank` FLOAT NOT NULL, KEY fk_indexes_page (page_id), KEY fk_indexes_lemma (lemma_id))");
+    }
+
+    private static void dropIndexes(Statement statement) throws SQLException {
+        dropIndex(statement, "lemma", "uk_lemma_site_lemma");
+        dropIndex(statement, "indexes", "idx_indexes_lemma_page_rank");
+        dropIndex(statement, "page", "idx_page_site_path_hash");
+    }
+
+    private static void dropIndex(Statement statement, String table, String index) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "' AND INDEX_NAME = '" + index + "'")) {
+            resultSet.next();
+            if (resultSet.getInt(1) == 0) {
+                return;
+            }
+        }
+        statement.execute("DROP INDEX " + index + " ON " + table);
+    }
+
+    private static long count(Statement statement, String table) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Частоты лемм на страницах распределены неравномерно (квадрат равномерной величины),
+     * как в живом тексте: немногие леммы встречаются на большинстве страниц.
+     */
+    private void generate(Statement statement) throws SQLException {
+        statement.execute("TRUNCATE TABLE indexes");
+        statement.execute("TRUNCATE TABLE lemma");
+        statement.execute("TRUNCATE TABLE page");
+        Random data = new Random(7);
+        try (PreparedStatement page = connection.prepareStatement("INSERT INTO page (id, site_id, path, path_hash, code) VALUES (?, ?, ?, ?, 200)");
+             PreparedStatement lemma = connection.prepareStatement("INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (?, ?, ?, 0)");
+             PreparedStatement index = connection.prepareStatement("INSERT INTO indexes (page_id, lemma_id, `rank`) VALUES (?, ?, ?)")) {
+            for (int site = 1; site <= SITES; site++) {
+                for (int i = 0; i < PAGES_PER_SITE; i++) {
+                    String path = pagePath(i);
+                    page.setInt(1, (site - 1) * PAGES_PER_SITE + i + 1);
+                    page.setInt(2, site);
+                    page.setString(3, path);
+                    page.setString(4, Page.hashPath(path));
+                    addBatch(page, i);
+                }
+                page.executeBatch();
+                for (int i = 0; i < LEMMAS_PER_SITE; i++) {
+                    lemma.setInt(1, (site - 1) * LEMMAS_PER_SITE + i + 1);
+                    lemma.setInt(2, site);
+                    lemma.setString(3, lemmaText(i));
+                    addBatch(lemma, i);
+                }
+                lemma.executeBatch();
+                int rows = 0;
+                for (int i = 0; i < PAGES_PER_SITE; i++) {
+                    for (int j = 0; j < POSTINGS_PER_PAGE; j++) {
+                        double skew = data.nextDouble();
+                        index.setInt(1, (site - 1) * PAGES_PER_SITE + i + 1);
+                        index.setInt(2, (site - 1) * LEMMAS_PER_SITE + (int) (skew * skew * LEMMAS_PER_SITE) + 1);
+                        index.setFloat(3, 1 + data.nextInt(10));
+                        addBatch(index, rows++);
+                    }
+                }
+                index.executeBatch();
+            }
+        }
+        statement.execute("UPDATE lemma l JOIN (SELECT lemma_id, COUNT(*) AS cnt FROM indexes GROUP BY lemma_id) d " +
+                "ON d.lemma_id = l.id SET l.frequency = d.cnt");
+    }
+
+    private static void addBatch(PreparedStatement statement, int row) throws SQLException {
+        statement.addBatch();
+        if (row % CHUNK == CHUNK - 1) {
+            statement.executeBatch();
+        }
+    }
+
+    private static String pagePath(int i) {
+        return "/catalog/section-" + (i % 100) + "/item-" + i + ".html";
+    }
+
+    private static String lemmaText(int i) {
+        return "лемма" + Integer.toString(i, 36);
+    }
+}
@@ -0,0 +1,65 @@
+package searchengine.sitecrawling;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.benchmark.Corpus;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Этапы индексации одной страницы: разбор HTML, разбиение на слова, лемматизация.
+ * Запуск: mvn -Pjmh compile exec:exec -Djmh.args="IndexingBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexingBenchmark {
+
+    @Param({"ru", "en"})
+    public String language;
+
+    private List<String> html;
+    private List<String> texts;
+    private LemmaExtraction lemmaExtraction;
+    private LemmaExtraction uncachedLemmaExtraction;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        html = Corpus.load(language);
+        texts = html.stream().map(page -> PageParser.parse(page, Corpus.BASE_URL).text()).toList();
+        lemmaExtraction = Corpus.lemmaExtraction(200_000);
+        uncachedLemmaExtraction = Corpus.lemmaExtraction(0);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String page : html) {
+            blackhole.consume(PageParser.parse(page, Corpus.BASE_URL));
+        }
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole blackhole) {
+        for (String text : texts) {
+            WordTokenizer.tokenize(text, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void searchLemma(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(lemmaExtraction.searchLemma(text));
+        }
+    }
+
+    @Benchmark
+    public void searchLemmaWithoutCache(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(uncachedLemmaExtraction.searchLemma(text));
+        }
+    }
+}
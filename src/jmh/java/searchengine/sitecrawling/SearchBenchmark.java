@@ -0,0 +1,78 @@
+package searchengine.sitecrawling;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import searchengine.benchmark.Corpus;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка лемм сайта, ранжирование и сниппеты на сайте из pageCount страниц корпуса.
+ * Запуск: mvn -Pjmh compile exec:exec -Djmh.args="SearchBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"ru", "en"})
+    public String language;
+
+    @Param({"200"})
+    public int pageCount;
+
+    private LemmaExtraction lemmaExtraction;
+    private Site site;
+    private List<Page> pages;
+    private List<Index> indexes;
+    private String query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lemmaExtraction = Corpus.lemmaExtraction(200_000);
+        query = Corpus.query(language);
+        site = new Site();
+        site.setUrl(Corpus.BASE_URL);
+        List<String> html = Corpus.load(language);
+        pages = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            String content = html.get(i % html.size());
+            Page page = new Page("/page-" + i);
+            page.setId(i + 1);
+            page.setSite(site);
+            page.setContent(content);
+            page.setText(PageParser.parse(content, Corpus.BASE_URL).text());
+            pages.add(page);
+        }
+        Pair<List<Lemma>, List<Index>> lemmaAndIndex = SiteLemmatizer.lemmatize(lemmaExtraction, site, pages);
+        indexes = lemmaAndIndex.getRight();
+    }
+
+    @Benchmark
+    public Object lemmaMerge() {
+        return SiteLemmatizer.lemmatize(lemmaExtraction, site, pages);
+    }
+
+    @Benchmark
+    public Object ranking() {
+        return RelevanceRanking.rank(indexes, Map.of(), false);
+    }
+
+    @Benchmark
+    public void snippets(Blackhole blackhole) {
+        for (Page page : pages) {
+            blackhole.consume(SnippetGenerator.generatedSnippet(query, page.getText()));
+        }
+    }
+}
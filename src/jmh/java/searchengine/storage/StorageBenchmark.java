@@ -0,0 +1,173 @@
+package searchengine.storage;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.Application;
+import searchengine.benchmark.Corpus;
+import searchengine.config.AppConfigProperties;
+import searchengine.dto.indexing.LemmatizedPage;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.SiteStatus;
+import searchengine.repositories.SiteRepository;
+import searchengine.sitecrawling.LemmaDictionary;
+import searchengine.sitecrawling.LemmaExtraction;
+import searchengine.sitecrawling.PageParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение движков хранения на сайте из pageCount страниц корпуса: запись сайта через конвейерный SiteWriter
+ * и чтение, из которого складывается поиск, - леммы запроса, их индексы и тексты первой страницы выдачи.
+ * engine=segment работает без БД во временном каталоге, engine=jpa поднимает контекст приложения
+ * и пишет в MySQL из application.yaml.
+ * Запуск: mvn -Pjmh compile exec:exec -Djmh.args="StorageBenchmark -p engine=segment"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    private static final int RESULT_PAGE = 20;
+
+    @Param({"segment", "jpa"})
+    public String engine;
+
+    @Param({"ru"})
+    public String language;
+
+    @Param({"1000"})
+    public int pageCount;
+
+    private ConfigurableApplicationContext context;
+    private SiteRepository siteRepository;
+    private IndexStorage storage;
+    private Path dir;
+    private int nextSiteId = 1;
+    private List<String> html;
+    private List<String> texts;
+    private List<Map<String, int[]>> analyzed;
+    private final List<Site> written = new ArrayList<>();
+    private Site site;
+    private List<String> queryLemmas;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (engine.equals("jpa")) {
+            context = new SpringApplicationBuilder(Application.class)
+                    .web(WebApplicationType.NONE)
+                    .properties("app.storage.engine=jpa")
+                    .run();
+            siteRepository = context.getBean(SiteRepository.class);
+            storage = context.getBean(IndexStorage.class);
+        } else {
+            dir = Files.createTempDirectory("storage-benchmark");
+            AppConfigProperties properties = new AppConfigProperties();
+            properties.getStorage().setDir(dir.toString());
+            storage = new SegmentIndexStorage(properties, null);
+        }
+        LemmaExtraction lemmaExtraction = Corpus.lemmaExtraction(200_000);
+        html = Corpus.load(language);
+        texts = html.stream().map(page -> PageParser.parse(page, Corpus.BASE_URL).text()).toList();
+        analyzed = texts.stream().map(lemmaExtraction::analyzeText).toList();
+        queryLemmas = List.copyOf(lemmaExtraction.getLemmaSet(Corpus.query(language)));
+        site = writeSite();
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropWritten() {
+        written.stream().filter(writtenSite -> writtenSite != site).forEach(this::drop);
+        written.removeIf(writtenSite -> writtenSite != site);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        written.forEach(this::drop);
+        if (context != null) {
+            context.close();
+        }
+        if (storage instanceof SegmentIndexStorage segmentStorage) {
+            segmentStorage.close();
+        }
+        if (dir != null) {
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Benchmark
+    public Site write() {
+        return writeSite();
+    }
+
+    @Benchmark
+    public void search(Blackhole blackhole) {
+        List<Lemma> lemmas = new ArrayList<>();
+        for (String lemma : queryLemmas) {
+            lemmas.addAll(storage.findLemmas(lemma, site));
+        }
+        List<Index> postings = storage.findPostings(lemmas, lemmas.size() > 1);
+        List<Integer> pageIds = postings.stream()
+                .map(index -> index.getPage().getId())
+                .distinct()
+                .limit(RESULT_PAGE)
+                .toList();
+        blackhole.consume(postings);
+        blackhole.consume(storage.findTexts(pageIds));
+    }
+
+    private Site writeSite() {
+        Site target = new Site();
+        target.setUrl(Corpus.BASE_URL);
+        target.setName("benchmark");
+        target.setStatus(SiteStatus.INDEXED);
+        target.setStatusTime(LocalDateTime.now());
+        target.setError("");
+        target.setServing(false);
+        if (siteRepository != null) {
+            siteRepository.save(target);
+        } else {
+            target.setId(nextSiteId++);
+        }
+        LemmaDictionary dictionary = new LemmaDictionary();
+        IndexStorage.SiteWriter writer = storage.openWriter(target, false, dictionary);
+        List<LemmatizedPage> batch = new ArrayList<>();
+        for (int i = 0; i < pageCount; i++) {
+            Page page = new Page("/page-" + i);
+            page.setCode(200);
+            page.setTitle("page " + i);
+            page.setContent(html.get(i % html.size()));
+            page.setText(texts.get(i % texts.size()));
+            batch.add(dictionary.addPage(page, analyzed.get(i % analyzed.size())));
+            if (batch.size() == 50) {
+                writer.write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writer.write(batch);
+        }
+        writer.close();
+        written.add(target);
+        return target;
+    }
+
+    private void drop(Site target) {
+        storage.deleteSite(target.getId());
+        if (siteRepository != null) {
+            siteRepository.delete(target);
+        }
+    }
+}
@@ -6,6 +6,10 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Setter
 @Getter
 @Component
@@ -14,4 +18,147 @@ import org.springframework.stereotype.Component;
 public class AppConfigProperties {
     private String userAgent;
     private String referrer;
+    private Pipeline pipeline = new Pipeline();
+    private Fetch fetch = new Fetch();
+    private Politeness politeness = new Politeness();
+    private Frontier frontier = new Frontier();
+    private Visited visited = new Visited();
+    private Incremental incremental = new Incremental();
+    private Cluster cluster = new Cluster();
+    private Morphology morphology = new Morphology();
+    private AnalysisCache analysisCache = new AnalysisCache();
+    private Bulk bulk = new Bulk();
+    private Storage storage = new Storage();
+    private PageQueue pageQueue = new PageQueue();
+
+    @Setter
+    @Getter
+    public static class Pipeline {
+        private boolean enabled = true;
+        private int queueCapacity = 100;
+        private int lemmaWorkers = Runtime.getRuntime().availableProcessors();
+        private int batchSize = 50;
+    }
+
+    @Setter
+    @Getter
+    public static class Fetch {
+        private int maxInFlight = 200;
+        private int timeoutMs = 5000;
+        private int clientThreads = 8;
+        private int maxBodySizeKb = 5120;
+        private List<String> allowedContentTypes = List.of("text/html", "application/xhtml+xml");
+    }
+
+    @Setter
+    @Getter
+    public static class Politeness {
+        private boolean respectRobots = true;
+        private int maxConcurrentPerHost = 4;
+        private double requestsPerSecond = 5;
+        private double minRequestsPerSecond = 0.2;
+        /** Через сколько минут robots.txt хоста загружается заново. */
+        private int robotsTtlMinutes = 1440;
+        private Map<String, HostLimits> hosts = new HashMap<>();
+    }
+
+    @Setter
+    @Getter
+    public static class HostLimits {
+        private Integer maxConcurrent;
+        private Double requestsPerSecond;
+    }
+
+    @Setter
+    @Getter
+    public static class Frontier {
+        private boolean enabled = true;
+        private String dir = "frontier";
+        private int maxActiveTasks = 32;
+    }
+
+    @Setter
+    @Getter
+    public static class Visited {
+        private String mode = "fingerprint";
+        private int memoryBudgetMb = 64;
+        private int bloomHashes = 7;
+    }
+
+    @Setter
+    @Getter
+    public static class Incremental {
+        private boolean enabled = true;
+    }
+
+    /**
+     * nodeId - имя узла в таблице site_lease; если не задано, берётся имя хоста и pid.
+     */
+    @Setter
+    @Getter
+    public static class Cluster {
+        private boolean enabled = false;
+        private String nodeId;
+        private int leaseSeconds = 60;
+        private int heartbeatSeconds = 15;
+        private int retrySeconds = 30;
+    }
+
+    @Setter
+    @Getter
+    public static class Morphology {
+        private int cacheSize = 200_000;
+    }
+
+    /**
+     * dir - каталог кэша лемматизации страниц, maxSizeMb - предельный размер файлов в нём.
+     */
+    @Setter
+    @Getter
+    public static class AnalysisCache {
+        private boolean enabled = true;
+        private String dir = "analysis-cache";
+        private int maxSizeMb = 512;
+    }
+
+    @Setter
+    @Getter
+    public static class Bulk {
+        private int chunkSize = 1000;
+    }
+
+    /**
+     * engine - где хранятся страницы, леммы и индексы: jpa (таблицы MySQL) или segment (файлы в каталоге dir).
+     * flushPostings - сколько индексов копится в памяти до записи сегмента,
+     * maxSegments - сколько сегментов у сайта может быть до слияния.
+     */
+    @Setter
+    @Getter
+    public static class Storage {
+        private String engine = "jpa";
+        private String dir = "index-store";
+        private int flushPostings = 200_000;
+        private int maxSegments = 8;
+    }
+
+    /**
+     * Очередь /api/indexPage: batchSize - сколько страниц записывается одной транзакцией,
+     * lingerMs - сколько ждать пополнения неполной пачки, fetchThreads - одновременные загрузки,
+     * ticketsKept - сколько завершённых заданий хранится для запроса статуса.
+     * maxBulkUrls - предел адресов в одном запросе /api/indexPages (вместе с адресами из sitemap),
+     * bulkTimeoutSeconds - сколько /api/indexPages ждёт завершения заданий, прежде чем вернуть их текущее состояние
+     * (не больше 60 с: запрос держит поток сервлета, незавершённые задания возвращаются с номером),
+     * maxSitemapSizeMb - предельный размер sitemap после распаковки.
+     */
+    @Setter
+    @Getter
+    public static class PageQueue {
+        private int batchSize = 50;
+        private int lingerMs = 200;
+        private int fetchThreads = 8;
+        private int ticketsKept = 10_000;
+        private int maxBulkUrls = 10_000;
+        private int bulkTimeoutSeconds = 30;
+        private int maxSitemapSizeMb = 50;
+    }
 }
@@ -0,0 +1,175 @@
+package searchengine.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Версионные миграции схемы из classpath:db/migration/V{номер}__{описание}.sql (имена как у Flyway).
+ * Таблицы и столбцы по-прежнему создаёт Hibernate (ddl-auto: update), поэтому миграции запускаются после него
+ * и отвечают за то, чего ddl-auto не умеет: индексы, уникальные ключи и перенос данных.
+ * Применённые версии записываются в schema_version; узлы кластера выполняют миграции по очереди (GET_LOCK).
+ * Строка "-- requires-column: таблица.столбец" в начале файла пропускает миграцию, если такого столбца нет.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaMigrations {
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final Pattern REQUIRES_COLUMN = Pattern.compile("^-- requires-column: (\\w+)\\.(\\w+)\\s*$", Pattern.MULTILINE);
+    private static final int DUPLICATE_KEY_NAME = 1061;
+    private static final int LOCK_TIMEOUT_SECONDS = 600;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SchemaMigrations(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() throws IOException {
+        List<Migration> migrations = load();
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT PRIMARY KEY, description VARCHAR(255) NOT NULL, " +
+                        "installed_at DATETIME(3) NOT NULL, execution_ms BIGINT NOT NULL, skipped BIT(1) NOT NULL)");
+                try (ResultSet lock = statement.executeQuery("SELECT GET_LOCK('schema_migrations', " + LOCK_TIMEOUT_SECONDS + ")")) {
+                    if (!lock.next() || lock.getInt(1) != 1) {
+                        throw new SQLException("Не удалось получить блокировку миграций схемы");
+                    }
+                }
+                try {
+                    Set<Integer> applied = appliedVersions(statement);
+                    for (Migration migration : migrations) {
+                        if (!applied.contains(migration.version())) {
+                            apply(connection, migration);
+                        }
+                    }
+                } finally {
+                    statement.executeQuery("SELECT RELEASE_LOCK('schema_migrations')").close();
+                }
+            }
+            return null;
+        });
+    }
+
+    private List<Migration> load() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath*:db/migration/V*__*.sql")) {
+            Matcher matcher = FILE_NAME.matcher(resource.getFilename());
+            if (matcher.matches()) {
+                String sql = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), sql));
+            }
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        return migrations;
+    }
+
+    private Set<Integer> appliedVersions(Statement statement) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (ResultSet resultSet = statement.executeQuery("SELECT version FROM schema_version")) {
+            while (resultSet.next()) {
+                versions.add(resultSet.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        long started = System.currentTimeMillis();
+        boolean skipped = !requiredColumnsExist(connection, migration.sql());
+        if (skipped) {
+            log.info("Миграция V{} ({}) не нужна для этой схемы", migration.version(), migration.description());
+        } else {
+            log.info("Миграция V{}: {}", migration.version(), migration.description());
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements(migration.sql())) {
+                    execute(statement, sql);
+                }
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description, installed_at, execution_ms, skipped) VALUES (?, ?, NOW(3), ?, ?)")) {
+            insert.setInt(1, migration.version());
+            insert.setString(2, migration.description());
+            insert.setLong(3, System.currentTimeMillis() - started);
+            insert.setBoolean(4, skipped);
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Индекс с тем же именем мог быть создан раньше через ddl-auto - такое создание пропускается.
+     */
+    private void execute(Statement statement, String sql) throws SQLException {
+        try {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            if (e.getErrorCode() != DUPLICATE_KEY_NAME) {
+                throw e;
+            }
+            log.info("Индекс уже существует, пропускаем: {}", e.getMessage());
+        }
+    }
+
+    private boolean requiredColumnsExist(Connection connection, String sql) throws SQLException {
+        Matcher matcher = REQUIRES_COLUMN.matcher(sql);
+        while (matcher.find()) {
+            try (PreparedStatement select = connection.prepareStatement("SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+                select.setString(1, matcher.group(1));
+                select.setString(2, matcher.group(2));
+                try (ResultSet resultSet = select.executeQuery()) {
+                    if (!resultSet.next() || resultSet.getInt(1) == 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Операторы разделяются точкой с запятой в конце строки; строки-комментарии "--" отбрасываются.
+     */
+    static List<String> statements(String sql) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : sql.split("\\R")) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String statement = current.toString().strip();
+                statements.add(statement.substring(0, statement.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().strip());
+        }
+        return statements;
+    }
+
+    private record Migration(int version, String description, String sql) {
+    }
+}
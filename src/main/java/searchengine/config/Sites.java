@@ -3,9 +3,33 @@ package searchengine.config;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Setter
 @Getter
 public class Sites {
     private String url;
     private String name;
+    /** Бюджет обхода сайта; незаданное ограничение не действует. */
+    private Integer maxDepth;
+    private Integer maxPages;
+    private Integer maxDurationMinutes;
+    /** Веса шаблонов URL: положительный вес поднимает ссылку в очереди обхода, отрицательный - опускает. */
+    private List<UrlWeight> urlWeights = new ArrayList<>();
+
+    /**
+     * Задан ли для сайта бюджет или веса обхода: тогда и без конвейера сайт обходится через CrawlFrontier.
+     */
+    public boolean hasCrawlBudget() {
+        return maxDepth != null || maxPages != null || maxDurationMinutes != null || !urlWeights.isEmpty();
+    }
+
+    @Setter
+    @Getter
+    public static class UrlWeight {
+        /** Регулярное выражение, которое ищется в URL. */
+        private String pattern;
+        private double weight;
+    }
 }
@@ -1,7 +1,10 @@
 package searchengine.controllers;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import searchengine.dto.indexing.IndexPagesRequest;
+import searchengine.dto.indexing.ResponseIndexPage;
 import searchengine.dto.indexing.ResponseSite;
 import searchengine.dto.statistics.StatisticsResponseDto;
 import searchengine.services.IndexingSiteService;
@@ -35,6 +38,19 @@ public class ApiController {
         return ResponseEntity.ok(indexingSiteService.indexPage(url));
     }
 
+    @PostMapping("/indexPages")
+    public ResponseEntity<ResponseSite> indexPages(@RequestBody IndexPagesRequest request) {
+        return ResponseEntity.ok(indexingSiteService.indexPages(request));
+    }
+
+    @GetMapping("/indexPage/{ticket}")
+    public ResponseEntity<ResponseSite> indexPageStatus(@PathVariable String ticket) {
+        ResponseSite response = indexingSiteService.indexPageStatus(ticket);
+        return response instanceof ResponseIndexPage
+                ? ResponseEntity.ok(response)
+                : ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
     @GetMapping("/search")
     public ResponseEntity<ResponseSite> search(@RequestParam String query,
                                                @RequestParam(required = false) String site,
@@ -0,0 +1,13 @@
+package searchengine.dto.indexing;
+
+import java.util.List;
+
+/**
+ * Тело /api/indexPages: список адресов страниц и/или адрес sitemap.xml, из которого берутся остальные.
+ */
+public record IndexPagesRequest(
+        List<String> urls,
+        String sitemap
+) {
+
+}
@@ -0,0 +1,11 @@
+package searchengine.dto.indexing;
+
+public record KnownPage(
+        Integer id,
+        String path,
+        String etag,
+        String lastModified,
+        String contentHash
+) {
+
+}
@@ -0,0 +1,16 @@
+package searchengine.dto.indexing;
+
+import searchengine.model.Page;
+
+/**
+ * lemmaIds - id лемм страницы в LemmaDictionary, ranks - сколько раз лемма встретилась на странице,
+ * positions - позиции леммы на странице, закодированные PositionCodec.
+ */
+public record LemmatizedPage(
+        Page page,
+        int[] lemmaIds,
+        float[] ranks,
+        byte[][] positions
+) {
+
+}
@@ -0,0 +1,8 @@
+package searchengine.dto.indexing;
+
+public record PageText(
+        Integer pageId,
+        String text
+) {
+
+}
@@ -0,0 +1,13 @@
+package searchengine.dto.indexing;
+
+/**
+ * Этапы задания очереди /api/indexPage: QUEUED - ждёт пачки, FETCHING - страница загружается и лемматизируется,
+ * WRITING - пачка записывается в хранилище, INDEXED и FAILED - задание завершено.
+ */
+public enum PageTicketStatus {
+    QUEUED,
+    FETCHING,
+    WRITING,
+    INDEXED,
+    FAILED
+}
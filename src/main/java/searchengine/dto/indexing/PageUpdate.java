@@ -0,0 +1,18 @@
+package searchengine.dto.indexing;
+
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+
+import java.util.List;
+
+/**
+ * Новая версия страницы для переиндексации: леммы с частотой 1 и индексы, ссылающиеся на эти леммы.
+ */
+public record PageUpdate(
+        Page page,
+        List<Lemma> lemmas,
+        List<Index> indexes
+) {
+
+}
@@ -0,0 +1,11 @@
+package searchengine.dto.indexing;
+
+import java.util.List;
+
+public record ParsedPage(
+        String title,
+        String text,
+        List<String> links
+) {
+
+}
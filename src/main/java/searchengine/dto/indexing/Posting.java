@@ -0,0 +1,16 @@
+package searchengine.dto.indexing;
+
+/**
+ * Строка индекса для поиска: без id и, если позиции не нужны, без positions.
+ */
+public record Posting(
+        Integer pageId,
+        Integer lemmaId,
+        Float rank,
+        byte[] positions
+) {
+
+    public Posting(Integer pageId, Integer lemmaId, Float rank) {
+        this(pageId, lemmaId, rank, null);
+    }
+}
@@ -0,0 +1,34 @@
+package searchengine.dto.indexing;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ответ /api/indexPage и /api/indexPage/{ticket}: номер задания в очереди и его состояние.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResponseIndexPage extends ResponseSite {
+
+    private final String ticket;
+
+    private final String url;
+
+    private final PageTicketStatus status;
+
+    private final LocalDateTime queuedAt;
+
+    private final LocalDateTime finishedAt;
+
+    public ResponseIndexPage(String ticket, String url, PageTicketStatus status, String error,
+                             LocalDateTime queuedAt, LocalDateTime finishedAt) {
+        super(status != PageTicketStatus.FAILED, error);
+        this.ticket = ticket;
+        this.url = url;
+        this.status = status;
+        this.queuedAt = queuedAt;
+        this.finishedAt = finishedAt;
+    }
+}
@@ -0,0 +1,39 @@
+package searchengine.dto.indexing;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Ответ /api/indexPages: итог по каждому адресу и общая скорость. failed - в том числе страницы, которые
+ * не удалось загрузить. pending - задания, не завершившиеся за bulkTimeoutSeconds (не больше 60 с);
+ * их состояние можно дальше запрашивать через /api/indexPage/{ticket}.
+ */
+@Getter
+public class ResponseIndexPages extends ResponseSite {
+
+    private final int total;
+
+    private final int indexed;
+
+    private final int failed;
+
+    private final int pending;
+
+    private final long elapsedMs;
+
+    private final double pagesPerSecond;
+
+    private final List<ResponseIndexPage> pages;
+
+    public ResponseIndexPages(List<ResponseIndexPage> pages, long elapsedMs) {
+        super(true);
+        this.pages = pages;
+        this.total = pages.size();
+        this.indexed = (int) pages.stream().filter(page -> page.getStatus() == PageTicketStatus.INDEXED).count();
+        this.failed = (int) pages.stream().filter(page -> page.getStatus() == PageTicketStatus.FAILED).count();
+        this.pending = total - indexed - failed;
+        this.elapsedMs = elapsedMs;
+        this.pagesPerSecond = elapsedMs == 0 ? indexed : indexed * 1000.0 / elapsedMs;
+    }
+}
@@ -0,0 +1,24 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Счётчик id для пакетной записи: BulkWriter резервирует диапазон id таблицы одним запросом
+ * и вставляет строки с уже известными id, не дожидаясь ключей от AUTO_INCREMENT.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "id_range")
+public class IdRange {
+    @Id
+    @Column(name = "table_name", length = 64)
+    private String tableName;
+
+    @Column(name = "next_id", nullable = false)
+    private long nextId;
+}
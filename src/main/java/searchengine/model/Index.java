@@ -19,6 +19,12 @@ public class Index {
     @Column (name = "`rank`", nullable = false)
     private Float rank;
 
+    /**
+     * Позиции леммы на странице в формате PositionCodec; null у индексов, сохранённых без позиций.
+     */
+    @Column (name = "positions", columnDefinition = "BLOB")
+    private byte[] positions;
+
     @ManyToOne (fetch = FetchType.LAZY)
     @JoinColumn (name = "page_id", nullable = false)
     private Page page;
@@ -5,13 +5,17 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
 
 
 @Entity
 @Getter
 @Setter
-@Table(name = "page", indexes = @jakarta.persistence.Index(columnList = "path"))
+@Table(name = "page")
 @NoArgsConstructor
 public class Page {
     @Id
@@ -21,12 +25,40 @@ public class Page {
     @Column (name = "path", columnDefinition = "TEXT")
     private String path;
 
+    /**
+     * SHA-256 пути: по (site_id, path_hash) построен индекс для поиска страницы, сам path - TEXT и не индексируется.
+     */
+    @Column (name = "path_hash", length = 64)
+    private String pathHash;
+
     @Column (name = "code")
     private Integer code;
 
-    @Column(name = "content", columnDefinition = "MEDIUMTEXT")
+    @Column(name = "title", columnDefinition = "TEXT")
+    private String title;
+
+    @Column(name = "content_length")
+    private Integer contentLength;
+
+    /**
+     * HTML и текст страницы хранятся сжатыми в PageContent; в Page они заполнены,
+     * только пока страница обходится и индексируется.
+     */
+    @Transient
     private String content;
 
+    @Transient
+    private String text;
+
+    @Column(name = "etag", length = 255)
+    private String etag;
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "site_id")
     private Site site;
@@ -35,6 +67,25 @@ public class Page {
     private List<Index> indexList;
 
     public Page(String path) {
+        setPath(path);
+    }
+
+    public void setPath(String path) {
         this.path = path;
+        this.pathHash = path == null ? null : hashPath(path);
+    }
+
+    public static String hashPath(String path) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(path.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+        this.contentLength = content == null ? null : content.length();
     }
 }
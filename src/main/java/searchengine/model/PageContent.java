@@ -0,0 +1,34 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Холодная часть страницы: сжатые HTML и извлечённый текст. Строка page остаётся маленькой,
+ * а содержимое читается отдельно - для сниппетов найденных страниц и для разбора ссылок при ответе 304.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "page_content")
+public class PageContent {
+    @Id
+    @Column(name = "page_id", nullable = false)
+    private Integer pageId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "page_id")
+    private Page page;
+
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "html", columnDefinition = "LONGBLOB")
+    private String html;
+
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "text", columnDefinition = "MEDIUMBLOB")
+    private String text;
+}
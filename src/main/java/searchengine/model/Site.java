@@ -38,6 +38,13 @@ public class Site {
     @Column(name = "name", nullable = false, length = 255)
     private String name;
 
+    /**
+     * Поколение данных сайта, по которому работают поиск и статистика. Полная переиндексация пишет
+     * новое поколение с serving = false, переключает его одним UPDATE, а прежнее удаляется в фоне.
+     */
+    @Column(name = "serving", nullable = false, columnDefinition = "BIT(1) DEFAULT 1")
+    private boolean serving = true;
+
     @OneToMany(mappedBy = "site", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List <Page> pageList;
 
@@ -0,0 +1,36 @@
+package searchengine.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Аренда сайта узлом кластера. Узел индексирует сайт, только пока держит аренду и продлевает её;
+ * если узел пропал, аренда истекает и сайт забирает другой узел.
+ * generation растёт при каждом освобождении аренды: так ожидающие узлы понимают, что сайт уже обработан.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "site_lease")
+public class SiteLease {
+    @Id
+    @Column(name = "site_url", length = 255)
+    private String siteUrl;
+
+    @Column(name = "owner", length = 255)
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false, columnDefinition = "DATETIME(3)")
+    private LocalDateTime expiresAt;
+
+    @Column(name = "heartbeat_at", columnDefinition = "DATETIME(3)")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "generation", nullable = false)
+    private long generation;
+}
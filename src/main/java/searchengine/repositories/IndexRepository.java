@@ -4,6 +4,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import searchengine.dto.indexing.Posting;
 import searchengine.model.Index;
 import searchengine.model.Page;
 
@@ -15,7 +16,13 @@ public interface IndexRepository extends JpaRepository<Index,Integer> {
     @Query("SELECT p FROM Index i INNER JOIN i.page p WHERE i.lemma.lemma = :lemma")
     List<Page> findPagesByLemma(@Param("lemma") String lemma);
 
-    @Query("SELECT i FROM Index i WHERE i.lemma.id IN :lemmaIds")
-    List<Index> findByLemmaIdIn(@Param("lemmaIds") List<Integer> lemmaIds);
+    /**
+     * Только page_id и rank: запрос покрывается индексом idx_indexes_lemma_page_rank.
+     */
+    @Query("SELECT new searchengine.dto.indexing.Posting(i.page.id, i.lemma.id, i.rank) FROM Index i WHERE i.lemma.id IN :lemmaIds")
+    List<Posting> findRanksByLemmaIdIn(@Param("lemmaIds") List<Integer> lemmaIds);
+
+    @Query("SELECT new searchengine.dto.indexing.Posting(i.page.id, i.lemma.id, i.rank, i.positions) FROM Index i WHERE i.lemma.id IN :lemmaIds")
+    List<Posting> findPositionsByLemmaIdIn(@Param("lemmaIds") List<Integer> lemmaIds);
 
 }
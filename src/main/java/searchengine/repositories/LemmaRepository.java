@@ -12,11 +12,16 @@ import java.util.List;
 @Repository
 public interface LemmaRepository extends JpaRepository<Lemma,Integer> {
     
-    @Query("SELECT l FROM Lemma l WHERE l.lemma = :lemma")
+    @Query("SELECT l FROM Lemma l WHERE l.lemma = :lemma AND l.site.serving = true")
     List<Lemma> findByLemma(@Param("lemma") String lemma);
     @Query("SELECT l FROM Lemma l WHERE l.lemma = :lemma and l.site = :site")
     List<Lemma> findByLemmaToSiteId(@Param("lemma") String lemma, @Param("site") Site site);
 
+    List<Lemma> findAllBySite(Site site);
+
+    @Query("SELECT l FROM Lemma l WHERE l.site = :site AND l.lemma IN :lemmas")
+    List<Lemma> findBySiteAndLemmaIn(@Param("site") Site site, @Param("lemmas") List<String> lemmas);
+
     @Query("SELECT count(l) FROM Lemma l WHERE l.site.id = :id")
     int countLemmaToSite(@Param("id") Integer id);
 
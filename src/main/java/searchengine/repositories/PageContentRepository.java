@@ -0,0 +1,20 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import searchengine.dto.indexing.PageText;
+import searchengine.model.PageContent;
+
+import java.util.List;
+
+@Repository
+public interface PageContentRepository extends JpaRepository<PageContent, Integer> {
+
+    @Query("SELECT c.html FROM PageContent c WHERE c.pageId = :pageId")
+    String findHtmlByPageId(@Param("pageId") Integer pageId);
+
+    @Query("SELECT new searchengine.dto.indexing.PageText(c.pageId, c.text) FROM PageContent c WHERE c.pageId IN :pageIds")
+    List<PageText> findTextsByPageIds(@Param("pageIds") List<Integer> pageIds);
+}
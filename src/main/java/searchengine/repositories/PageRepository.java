@@ -4,13 +4,30 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import searchengine.dto.indexing.KnownPage;
 import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.List;
 
 @Repository
 public interface PageRepository extends JpaRepository<Page,Integer> {
-    Page findByPath(String url);
-    boolean existsByPath(String path);
-    void deletePageByPath(String substring);
+    @Query("SELECT count(p) > 0 FROM Page p WHERE p.site = :site AND p.pathHash = :pathHash AND p.path = :path")
+    boolean existsByPathHash(@Param("site") Site site, @Param("pathHash") String pathHash, @Param("path") String path);
+
+    /**
+     * Поиск идёт по индексу (site_id, path_hash), сравнение path отсекает совпадения хеша.
+     */
+    default boolean existsBySiteAndPath(Site site, String path) {
+        return existsByPathHash(site, Page.hashPath(path), path);
+    }
+
     @Query("SELECT count(p) FROM Page p WHERE p.site.id = :id")
     int countPagesToSite(@Param("id") Integer id);
+
+    @Query("SELECT count(p) FROM Page p WHERE p.site.serving = true")
+    long countServingPages();
+
+    @Query("SELECT new searchengine.dto.indexing.KnownPage(p.id, p.path, p.etag, p.lastModified, p.contentHash) FROM Page p WHERE p.site = :site")
+    List<KnownPage> findKnownPages(@Param("site") Site site);
 }
@@ -0,0 +1,52 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.SiteLease;
+
+/**
+ * Все сроки считаются по часам MySQL (NOW(3)), поэтому расхождение часов узлов не влияет на аренду.
+ */
+@Repository
+public interface SiteLeaseRepository extends JpaRepository<SiteLease, String> {
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO site_lease (site_url, expires_at, generation) VALUES (:siteUrl, NOW(3), 0)", nativeQuery = true)
+    void createIfAbsent(@Param("siteUrl") String siteUrl);
+
+    /**
+     * Владелец аренды с блокировкой строки до конца транзакции: вызывается в одной транзакции с acquire,
+     * чтобы прежний владелец был тем, у кого аренду действительно забрали.
+     */
+    @Query(value = "SELECT owner FROM site_lease WHERE site_url = :siteUrl FOR UPDATE", nativeQuery = true)
+    String lockOwner(@Param("siteUrl") String siteUrl);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE site_lease SET owner = :owner, expires_at = NOW(3) + INTERVAL :seconds SECOND, heartbeat_at = NOW(3) " +
+            "WHERE site_url = :siteUrl AND generation = :generation AND (owner IS NULL OR owner = :owner OR expires_at < NOW(3))", nativeQuery = true)
+    int acquire(@Param("siteUrl") String siteUrl, @Param("owner") String owner,
+                @Param("seconds") int seconds, @Param("generation") long generation);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE site_lease SET expires_at = NOW(3) + INTERVAL :seconds SECOND, heartbeat_at = NOW(3) " +
+            "WHERE site_url = :siteUrl AND owner = :owner", nativeQuery = true)
+    int renew(@Param("siteUrl") String siteUrl, @Param("owner") String owner, @Param("seconds") int seconds);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE site_lease SET owner = NULL, expires_at = NOW(3), generation = generation + 1 " +
+            "WHERE site_url = :siteUrl AND owner = :owner", nativeQuery = true)
+    int release(@Param("siteUrl") String siteUrl, @Param("owner") String owner);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE site_lease SET expires_at = NOW(3) WHERE site_url = :siteUrl AND owner = :owner", nativeQuery = true)
+    int expire(@Param("siteUrl") String siteUrl, @Param("owner") String owner);
+}
@@ -1,12 +1,37 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Site;
 
+import java.util.List;
+
+/**
+ * findByUrl и existsByUrl видят только текущее поколение сайта (serving = true).
+ */
 @Repository
 public interface SiteRepository extends JpaRepository<Site, Integer> {
-    Site findByUrl(String url);
-    boolean existsByUrl (String url);
-    
+    @Query("SELECT s FROM Site s WHERE s.url = :url AND s.serving = true")
+    Site findByUrl(@Param("url") String url);
+
+    @Query("SELECT count(s) > 0 FROM Site s WHERE s.url = :url AND s.serving = true")
+    boolean existsByUrl(@Param("url") String url);
+
+    @Query("SELECT s FROM Site s WHERE s.serving = true")
+    List<Site> findServing();
+
+    @Query("SELECT s FROM Site s WHERE s.url = :url AND s.serving = false ORDER BY s.id DESC")
+    List<Site> findHiddenGenerations(@Param("url") String url);
+
+    /**
+     * Делает поколение id текущим, а все остальные поколения сайта - скрытыми, одним запросом.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE site SET serving = (id = :id) WHERE url = :url", nativeQuery = true)
+    int switchServing(@Param("url") String url, @Param("id") int id);
 }
@@ -0,0 +1,153 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.AppConfigProperties;
+import searchengine.model.SiteLease;
+import searchengine.repositories.SiteLeaseRepository;
+import searchengine.sitecrawling.CrawlLease;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Режим кластера: несколько экземпляров приложения делят сайты через таблицу site_lease общей БД.
+ * Сайт индексирует узел, взявший аренду; аренда продлевается каждые heartbeatSeconds,
+ * а если узел пропал, через leaseSeconds её забирает другой узел.
+ */
+@Slf4j
+@Component
+public class ClusterCoordinator {
+    private final AppConfigProperties.Cluster settings;
+    private final SiteLeaseRepository siteLeaseRepository;
+    private final TransactionTemplate acquireTransaction;
+    @Getter
+    private final String nodeId;
+    private final Map<String, CrawlLease> leases = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    public ClusterCoordinator(AppConfigProperties connectionSetting, SiteLeaseRepository siteLeaseRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.settings = connectionSetting.getCluster();
+        this.siteLeaseRepository = siteLeaseRepository;
+        this.acquireTransaction = new TransactionTemplate(transactionManager);
+        this.nodeId = settings.getNodeId() == null || settings.getNodeId().isBlank() ? defaultNodeId() : settings.getNodeId();
+        if (settings.isEnabled()) {
+            scheduler.scheduleWithFixedDelay(this::heartbeat, settings.getHeartbeatSeconds(), settings.getHeartbeatSeconds(), TimeUnit.SECONDS);
+            log.info("Узел кластера {}: срок аренды {} с, продление каждые {} с", nodeId, settings.getLeaseSeconds(), settings.getHeartbeatSeconds());
+        }
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Текущее поколение аренды сайта; запись об аренде создаётся при первом обращении.
+     */
+    public long generation(String siteUrl) {
+        siteLeaseRepository.createIfAbsent(siteUrl);
+        return siteLeaseRepository.findById(siteUrl).map(SiteLease::getGeneration).orElse(0L);
+    }
+
+    /**
+     * Берёт аренду, если она свободна или истекла и сайт не обрабатывали после поколения generation.
+     * Возвращает null, если сайт занят другим узлом или уже обработан.
+     * Прежний владелец читается с блокировкой строки в одной транзакции с захватом аренды; сайт считается
+     * забранным, только если его держал другой узел, а не этот же узел до перезапуска.
+     */
+    public CrawlLease tryAcquire(String siteUrl, long generation) {
+        String[] previousOwner = new String[1];
+        Boolean acquired = acquireTransaction.execute(status -> {
+            previousOwner[0] = siteLeaseRepository.lockOwner(siteUrl);
+            return siteLeaseRepository.acquire(siteUrl, nodeId, settings.getLeaseSeconds(), generation) > 0;
+        });
+        if (!Boolean.TRUE.equals(acquired)) {
+            return null;
+        }
+        boolean takenOver = previousOwner[0] != null && !previousOwner[0].equals(nodeId);
+        CrawlLease lease = new CrawlLease(siteUrl, takenOver, settings.getLeaseSeconds());
+        leases.put(siteUrl, lease);
+        if (lease.isTakenOver()) {
+            log.info("Узел {} забрал сайт {} у узла {}", nodeId, siteUrl, previousOwner[0]);
+        } else if (previousOwner[0] != null) {
+            log.info("Узел {} снова взял в аренду сайт {}, оставшийся за ним до перезапуска", nodeId, siteUrl);
+        } else {
+            log.info("Узел {} взял в аренду сайт {}", nodeId, siteUrl);
+        }
+        return lease;
+    }
+
+    /**
+     * Освобождает аренду после обработки сайта. Потерянную аренду не трогаем: сайт уже обрабатывает другой узел
+     * или запись истечёт сама.
+     */
+    public void release(CrawlLease lease) {
+        leases.remove(lease.getSiteUrl());
+        if (!lease.isValid()) {
+            return;
+        }
+        try {
+            siteLeaseRepository.release(lease.getSiteUrl(), nodeId);
+        } catch (Exception e) {
+            log.warn("Не удалось освободить аренду сайта {}: {}", lease.getSiteUrl(), e.getMessage());
+        }
+    }
+
+    public void retryLater(Runnable task) {
+        scheduler.schedule(task, settings.getRetrySeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * При остановке узла аренды не освобождаются, а сразу истекают: поколение не растёт,
+     * и другие узлы продолжают недоделанные сайты.
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (CrawlLease lease : leases.values()) {
+            lease.lost();
+            try {
+                siteLeaseRepository.expire(lease.getSiteUrl(), nodeId);
+            } catch (Exception e) {
+                log.warn("Не удалось снять аренду сайта {}: {}", lease.getSiteUrl(), e.getMessage());
+            }
+        }
+        leases.clear();
+    }
+
+    private void heartbeat() {
+        for (CrawlLease lease : leases.values()) {
+            try {
+                if (siteLeaseRepository.renew(lease.getSiteUrl(), nodeId, settings.getLeaseSeconds()) > 0) {
+                    lease.renewed();
+                } else {
+                    lease.lost();
+                    leases.remove(lease.getSiteUrl());
+                    log.warn("Аренда сайта {} перешла к другому узлу, обход на узле {} останавливается", lease.getSiteUrl(), nodeId);
+                }
+            } catch (Exception e) {
+                log.warn("Не удалось продлить аренду сайта {}: {}", lease.getSiteUrl(), e.getMessage());
+            }
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -3,15 +3,9 @@ package searchengine.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
-import org.hibernate.Hibernate;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.AppConfigProperties;
 import searchengine.config.Sites;
 import searchengine.config.SitesList;
@@ -20,22 +14,20 @@ import searchengine.model.Index;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
-import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
-import searchengine.sitecrawling.LemmaExtraction;
-import searchengine.sitecrawling.SinglePageInsert;
-import searchengine.sitecrawling.SiteCrawler;
-import searchengine.sitecrawling.SnippetGenerator;
+import searchengine.sitecrawling.*;
+import searchengine.storage.IndexStorage;
 
+import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
@@ -48,56 +40,138 @@ public class IndexingSiteService {
     private final AppConfigProperties connectionSetting;
     private final LemmaExtraction lemmaExtraction;
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
-    private final SinglePageInsert singlePageInsert;
+    private final IndexStorage indexStorage;
+    private final GenerationPurger generationPurger;
+    private final PageFetcher pageFetcher;
     private final SitesList sitesList;
-    private final JdbcTemplate jdbcTemplate;
+    private final ClusterCoordinator clusterCoordinator;
+    private final PageIndexQueue pageIndexQueue;
+    private final SitemapReader sitemapReader;
     private ForkJoinPool forkJoinPool;
     private final AtomicBoolean indexingInProgress = new AtomicBoolean(false);
     private static final Logger logger = LoggerFactory.getLogger(IndexingSiteService.class);
+    /** Ошибка проиндексированного сайта, обход которого упёрся в бюджет памяти множества посещённых адресов. */
+    /** Верхний предел ожидания /api/indexPages: дольше держать поток сервлета нельзя, остальное - через статус заданий. */
+    private static final int MAX_BULK_WAIT_SECONDS = 60;
+    private static final String TRUNCATED_ERROR = "Обход неполный: исчерпан бюджет памяти посещённых адресов (app.visited.memoryBudgetMb), часть страниц пропущена";
 
     public ResponseSite startIndexing() {
         if (indexingInProgress.compareAndSet(false, true)) {
             logger.info("Запуск индексации, значение флага: {}", indexingInProgress);
-            forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            forkJoinPool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true,
+                    0, parallelism + connectionSetting.getFetch().getMaxInFlight(), 1, pool -> true, 60, TimeUnit.SECONDS);
             for (Sites sitesConfig : sitesList.getSites()) {
-                forkJoinPool.submit(() -> indexSite(sitesConfig));
+                if (clusterCoordinator.isEnabled()) {
+                    indexSiteInCluster(sitesConfig, clusterCoordinator.generation(sitesConfig.getUrl()));
+                } else {
+                    forkJoinPool.submit(() -> indexSite(sitesConfig));
+                }
             }
             return new ResponseSite(true);
         }
         else return new ResponseSite(false, "Индексация уже запущена");
     }
 
+    /**
+     * Режим кластера: сайт индексирует узел, получивший аренду. Остальные узлы раз в retrySeconds пробуют её забрать,
+     * пока сайт не будет обработан (поколение аренды выросло) или пока аренда владельца не истечёт.
+     */
+    private void indexSiteInCluster(Sites sitesConfig, long generation) {
+        if (!indexingInProgress.get()) {
+            return;
+        }
+        try {
+            CrawlLease lease = clusterCoordinator.tryAcquire(sitesConfig.getUrl(), generation);
+            if (lease != null) {
+                forkJoinPool.submit(() -> {
+                    try {
+                        indexSite(sitesConfig, lease);
+                    } finally {
+                        clusterCoordinator.release(lease);
+                    }
+                });
+            } else if (clusterCoordinator.generation(sitesConfig.getUrl()) > generation) {
+                log.info("Сайт {} проиндексирован другим узлом", sitesConfig.getUrl());
+            } else {
+                clusterCoordinator.retryLater(() -> indexSiteInCluster(sitesConfig, generation));
+            }
+        } catch (Exception e) {
+            log.error("Ошибка аренды сайта {}: {}", sitesConfig.getUrl(), e.getMessage());
+            clusterCoordinator.retryLater(() -> indexSiteInCluster(sitesConfig, generation));
+        }
+    }
+
     public void indexSite(Sites sitesUrl) {
-        Site site;
-        if (siteRepository.existsByUrl(sitesUrl.getUrl())) {
-            try {
-                log.info("Этот сайт уже обрабатывался: {}", sitesUrl);
-                site = siteRepository.findByUrl(sitesUrl.getUrl());
-                siteRepository.delete(site);
-                logger.info("Удаляем сайт из БД {}", sitesUrl.getUrl());
-            } catch (Exception e) {
-                logger.error("Ошибка удаления {}", e.getMessage());
-                throw e;
+        indexSite(sitesUrl, null);
+    }
+
+    /**
+     * lease - аренда сайта в режиме кластера, null при работе одним узлом.
+     */
+    public void indexSite(Sites sitesUrl, CrawlLease lease) {
+        Site serving = siteRepository.findByUrl(sitesUrl.getUrl());
+        Site site = null;
+        for (Site hidden : siteRepository.findHiddenGenerations(sitesUrl.getUrl())) {
+            if (site == null && canResume(hidden)) {
+                logger.info("Продолжаем построение нового поколения сайта {}", sitesUrl.getUrl());
+                site = hidden;
+            } else {
+                generationPurger.purge(hidden);
+            }
+        }
+        if (site == null && serving != null) {
+            log.info("Этот сайт уже обрабатывался: {}", sitesUrl);
+            if (canResume(serving)) {
+                logger.info("Продолжаем прерванную индексацию сайта {}", sitesUrl.getUrl());
+                site = serving;
+            } else if (canRecrawl(serving, lease)) {
+                logger.info("Повторный обход сайта {}: обновляются только изменившиеся страницы", sitesUrl.getUrl());
+                site = serving;
+            } else {
+                logger.info("Новое поколение сайта {}: до его готовности поиск работает по текущему", sitesUrl.getUrl());
             }
         }
-        logger.info("Создание сайта {}", sitesUrl.getUrl());
-        site = createSite(sitesUrl);
+        boolean existing = site != null;
+        boolean resume = existing && canResume(site);
+        if (existing) {
+            site.setStatus(INDEXING);
+            site.setStatusTime(LocalDateTime.now());
+            site.setError("");
+        } else {
+            logger.info("Создание сайта {}", sitesUrl.getUrl());
+            site = createSite(sitesUrl);
+            site.setServing(serving == null);
+        }
         siteRepository.save(site);
+        if (serving != null && !site.isServing()) {
+            serving.setStatus(INDEXING);
+            serving.setStatusTime(LocalDateTime.now());
+            serving.setError("");
+            siteRepository.save(serving);
+        }
 
         try {
             log.info("Началась индексация сайта: {}", sitesUrl);
-            List<Page> pages = new SiteCrawler(sitesUrl.getUrl(), sitesUrl.getUrl(), connectionSetting, indexingInProgress).compute();
+            if (connectionSetting.getPipeline().isEnabled()) {
+                indexSiteWithPipeline(site, sitesUrl, existing, resume, lease);
+                return;
+            }
+            CrawlSession session = new CrawlSession(sitesUrl.getUrl(), pageFetcher, indexingInProgress);
+            session.setVisitedUrls(VisitedUrlSet.create(connectionSetting.getVisited()));
+            session.setLease(lease);
+            List<Page> pages = sitesUrl.hasCrawlBudget()
+                    ? crawlWithBudget(session, sitesUrl)
+                    : new SiteCrawler(session, sitesUrl.getUrl()).compute();
             site.setPageList(addSiteToPage(site, pages));
 
-            Pair<List<Lemma>, List<Index>> lemmaAndIndex = findLemmaToText(site, pages);
+            Pair<List<Lemma>, List<Index>> lemmaAndIndex = SiteLemmatizer.lemmatize(lemmaExtraction, site, pages);
             site.setLemmaList(lemmaAndIndex.getLeft());
 
             site.setStatus(forkJoinPool.isShutdown() ? FAILED : INDEXED);
             site.setStatusTime(LocalDateTime.now());
-            site.setError(forkJoinPool.isShutdown() ? "Индексация остановлена пользователем" : "");
+            site.setError(forkJoinPool.isShutdown() ? "Индексация остановлена пользователем"
+                    : session.getVisitedUrls().isTruncated() ? TRUNCATED_ERROR : "");
             
             allInsert(site, pages, lemmaAndIndex);
 
@@ -107,10 +181,194 @@ public class IndexingSiteService {
             site.setStatusTime(LocalDateTime.now());
             site.setError(e.getMessage());
             siteRepository.save(site);
+            completeGeneration(site);
         }
         log.info("Сайт проиндексирован: {}", sitesUrl.getUrl());
     }
 
+    /**
+     * Прерванный обход можно продолжить, если сайт не был доиндексирован и на диске остался его журнал обхода.
+     */
+    private boolean canResume(Site site) {
+        return connectionSetting.getPipeline().isEnabled()
+                && connectionSetting.getFrontier().isEnabled()
+                && site.getStatus() != INDEXED
+                && CrawlFrontierLog.exists(Path.of(connectionSetting.getFrontier().getDir()), site.getUrl());
+    }
+
+    /**
+     * Повторный обход проиндексированного сайта без удаления: неизменившиеся страницы пропускаются
+     * по ответу 304 или совпадению хеша содержимого. Так же продолжается сайт, забранный у пропавшего узла кластера.
+     */
+    private boolean canRecrawl(Site site, CrawlLease lease) {
+        return connectionSetting.getPipeline().isEnabled()
+                && connectionSetting.getIncremental().isEnabled()
+                && (site.getStatus() == INDEXED || lease != null && lease.isTakenOver());
+    }
+
+    /**
+     * existing - данные сайта остались в БД, поэтому уже сохранённые страницы обновляются, а не добавляются заново;
+     * resume - обход продолжается по журналу, а не с главной страницы.
+     */
+    private void indexSiteWithPipeline(Site site, Sites sitesUrl, boolean existing, boolean resume, CrawlLease lease) {
+        CrawlFrontierLog frontier = openFrontier(sitesUrl, resume);
+        IndexingPipeline pipeline = new IndexingPipeline(site, lemmaExtraction, indexStorage, connectionSetting.getPipeline(), frontier, existing);
+
+        CrawlSession session = new CrawlSession(sitesUrl.getUrl(), pageFetcher, indexingInProgress);
+        session.setVisitedUrls(VisitedUrlSet.create(connectionSetting.getVisited()));
+        session.setPageConsumer(pipeline::submit);
+        session.setFrontier(frontier);
+        session.setStoredContent(indexStorage::findHtml);
+        session.setLease(lease);
+        session.setWriteFailed(pipeline::isFailed);
+        if (existing) {
+            indexStorage.findKnownPages(site).forEach(knownPage -> session.getKnownPages().put(knownPage.path(), knownPage));
+        }
+        boolean complete = false;
+        try {
+            complete = crawl(session, sitesUrl, resume);
+        } finally {
+            pipeline.finish();
+        }
+        Throwable writeFailure = pipeline.getFailure();
+        boolean stopped = !session.isActive();
+        if (frontier != null) {
+            if (stopped) {
+                frontier.close();
+            } else {
+                frontier.delete();
+            }
+        }
+        if (lease != null && !lease.isValid()) {
+            log.warn("Аренда сайта {} потеряна, итоговый статус запишет узел-владелец", sitesUrl.getUrl());
+            return;
+        }
+        if (writeFailure != null) {
+            site.setStatus(FAILED);
+            site.setError("Ошибка записи страниц: " + writeFailure.getMessage());
+        } else {
+            boolean truncated = session.getVisitedUrls().isTruncated();
+            if (existing && complete && !truncated) {
+                removeUnvisitedPages(site, session);
+            }
+            site.setStatus(forkJoinPool.isShutdown() ? FAILED : INDEXED);
+            site.setError(forkJoinPool.isShutdown() ? "Индексация остановлена пользователем" : truncated ? TRUNCATED_ERROR : "");
+        }
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+        completeGeneration(site);
+        log.info("Сайт проиндексирован: {}", sitesUrl.getUrl());
+        indexStorage.report();
+        logMorphologyCache();
+    }
+
+    /**
+     * Завершает новое поколение сайта (serving = false). Успешное становится текущим одним UPDATE,
+     * а прежнее удаляется в фоне. Неудачное удаляется, если его нельзя продолжить по журналу обхода,
+     * и поиск остаётся на прежнем поколении, которому передаются статус и ошибка.
+     */
+    private void completeGeneration(Site site) {
+        if (site.isServing()) {
+            return;
+        }
+        Site previous = siteRepository.findByUrl(site.getUrl());
+        if (site.getStatus() == INDEXED) {
+            siteRepository.switchServing(site.getUrl(), site.getId());
+            site.setServing(true);
+            log.info("Поиск по сайту {} переключён на новое поколение", site.getUrl());
+            if (previous != null) {
+                generationPurger.purge(previous);
+            }
+            return;
+        }
+        if (previous != null) {
+            previous.setStatus(site.getStatus());
+            previous.setStatusTime(LocalDateTime.now());
+            previous.setError(site.getError());
+            siteRepository.save(previous);
+        }
+        if (!canResume(site)) {
+            generationPurger.purge(site);
+        }
+    }
+
+    private void logMorphologyCache() {
+        MorphologyCache.Stats stats = lemmaExtraction.getCacheStats();
+        log.info("Кэш морфологии: попаданий {}%, слов в кэше {}, вытеснено {}",
+                String.format("%.1f", stats.hitRate() * 100), stats.size(), stats.evictions());
+        AnalysisCache.Stats analysisStats = lemmaExtraction.getAnalysisCacheStats();
+        log.info("Кэш анализа страниц: попаданий {}%, записей {}, {} КБ",
+                String.format("%.1f", analysisStats.hitRate() * 100), analysisStats.entries(), analysisStats.sizeBytes() / 1024);
+    }
+
+    /**
+     * Возвращает true, если сайт обойдён полностью: обход не остановлен и не упёрся в бюджет сайта.
+     */
+    private boolean crawl(CrawlSession session, Sites sitesUrl, boolean resume) {
+        String headUrl = session.getHeadUrl();
+        CrawlFrontierLog frontier = session.getFrontier();
+        CrawlFrontier crawlFrontier = new CrawlFrontier(sitesUrl, connectionSetting.getFrontier().getMaxActiveTasks());
+        session.setCrawlFrontier(crawlFrontier);
+        if (!resume || frontier == null) {
+            session.getVisitedUrls().addIfAbsent(headUrl);
+            crawlFrontier.offer(headUrl, 0);
+            if (frontier != null) {
+                frontier.enqueued(headUrl, 0);
+            }
+        } else {
+            try {
+                frontier.forEachDone(url -> {
+                    session.getVisitedUrls().addIfAbsent(url);
+                    session.getKnownPages().remove(url.substring(headUrl.length()));
+                });
+            } catch (IOException e) {
+                log.warn("Не удалось прочитать сохранённые страницы из журнала обхода {}: {}", headUrl, e.getMessage());
+            }
+            frontier.getPending().forEach((url, depth) -> {
+                session.getVisitedUrls().addIfAbsent(url);
+                crawlFrontier.offer(url, depth);
+            });
+        }
+        try {
+            return crawlFrontier.run(session, forkJoinPool);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Обход без конвейера с бюджетом и весами сайта: страницы собираются в список, а не отдаются на запись.
+     */
+    private List<Page> crawlWithBudget(CrawlSession session, Sites sitesUrl) {
+        Queue<Page> crawled = new ConcurrentLinkedQueue<>();
+        session.setPageConsumer(crawled::add);
+        crawl(session, sitesUrl, false);
+        return new ArrayList<>(crawled);
+    }
+
+    /**
+     * Страницы, до которых повторный обход не дошёл, больше не доступны по ссылкам с сайта.
+     */
+    private void removeUnvisitedPages(Site site, CrawlSession session) {
+        List<Integer> removedPages = session.getKnownPages().values().stream().map(KnownPage::id).toList();
+        indexStorage.deletePages(site, removedPages);
+        int removedLemmas = indexStorage.deleteUnusedLemmas(site);
+        log.info("Сайт {}: удалено устаревших страниц {}, лемм {}", site.getName(), removedPages.size(), removedLemmas);
+    }
+
+    private CrawlFrontierLog openFrontier(Sites sitesUrl, boolean resume) {
+        if (!connectionSetting.getFrontier().isEnabled()) {
+            return null;
+        }
+        try {
+            return CrawlFrontierLog.open(Path.of(connectionSetting.getFrontier().getDir()), sitesUrl.getUrl(), resume);
+        } catch (IOException e) {
+            log.error("Не удалось открыть журнал обхода сайта {}: {}", sitesUrl.getUrl(), e.getMessage());
+            return null;
+        }
+    }
+
     private Site createSite(Sites sitesUrl) {
         Site site = new Site();
         site.setUrl(sitesUrl.getUrl());
@@ -126,93 +384,20 @@ public class IndexingSiteService {
         return pages;
     }
 
-    private Pair<List<Lemma>, List<Index>> findLemmaToText(Site site, List<Page> pages) {
-        List<Pair<List<Lemma>, List<Index>>> results = pages.parallelStream()
-                .map(page -> findLemmaForSinglePage(page, site)).toList();
-        
-        List<Lemma> oldLemmas = results.stream()
-                .flatMap(pair -> pair.getLeft().stream())
-                .collect(Collectors.toList());
-
-        List<Lemma> combinedLemmas = results.stream()
-                .flatMap(pair -> pair.getLeft().stream())
-                .distinct()
-                .collect(Collectors.toList());
-
-        Map<Lemma, Lemma> lemmaMapping = new HashMap<>();
-        oldLemmas.forEach(oldLemma -> {
-            Lemma uniqueLemma = combinedLemmas.stream()
-                    .filter(l -> l.equals(oldLemma))
-                    .findFirst()
-                    .orElse(null);
-            if (uniqueLemma != null) {
-                lemmaMapping.put(oldLemma, uniqueLemma);
-            }
-        });
-
-        List<Index> combinedIndexes = results.stream()
-                .flatMap(pair -> pair.getRight().stream())
-                .collect(Collectors.toList());
-
-        combinedIndexes.forEach(index -> {
-            Lemma oldLemma = index.getLemma();
-            Lemma newLemma = lemmaMapping.get(oldLemma);
-            if (newLemma != null) {
-                index.setLemma(newLemma);
-            }
-        });
-
-        Map<String, Long> lemmaFrequencyMap = combinedIndexes.stream()
-                .collect(Collectors.groupingBy(index -> index.getLemma().getLemma(),
-                        Collectors.counting()));
-
-        for (Lemma lemma : combinedLemmas) {
-            long count = lemmaFrequencyMap.getOrDefault(lemma.getLemma(), 0L);
-            lemma.setFrequency((int) count);
-        }
-
-        return Pair.of(combinedLemmas, combinedIndexes);
-    }
-
     private void allInsert(Site site, List<Page> pages, Pair<List<Lemma>, List<Index>> lemmaAndIndex) {
         forkJoinPool.execute(() -> {
             String string = forkJoinPool.isShutdown() ? String.format("Сохранение сайта %s с остановленной индексацией", site.getName()) : String.format("Сохранение проиндексированного сайта %s", site.getName());
             log.info(string);
             log.info("Сохранение сайта: {}", site.getName());
             siteRepository.save(site);
-
-            log.info("Сохранение страниц: {}", site.getName());
-            pageRepository.saveAll(pages);
-
-            log.info("Сохранение лемм: {}", site.getName());
-            lemmaRepository.saveAll(lemmaAndIndex.getLeft());
-
-            log.info("Сохранение индексов : {}", site.getName());
-            batchIndexInsert(lemmaAndIndex.getRight());
+            indexStorage.saveSite(site, pages, lemmaAndIndex.getLeft(), lemmaAndIndex.getRight());
+            indexStorage.report();
+            completeGeneration(site);
             string = forkJoinPool.isShutdown() ? String.format("Сохранение сайта %s с остановленной индексацией завершено", site.getName()) : String.format("Сохранение проиндексированного сайта %s завершено", site.getName());
             log.info(string);
         });
     }
 
-    private void batchIndexInsert(List<Index> indexList) {
-        String sql = "INSERT INTO indexes (page_id,lemma_id,`rank`) VALUES (?,?,?)";
-        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
-            @Override
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
-                Index index = indexList.get(i);
-                Hibernate.initialize(index.getPage());
-                Hibernate.initialize(index.getLemma());
-                ps.setObject(1, index.getPage().getId());
-                ps.setObject(2, index.getLemma().getId());
-                ps.setFloat(3, index.getRank());
-            }
-            @Override
-            public int getBatchSize() {  //  возвращает размер списка индексов, который соответствует количеству записей, обрабатываемых одним пакетом
-                return indexList.size();
-            }
-        });
-    }
-
     public ResponseSite stopIndexing() {
         if (!forkJoinPool.isShutdown()) {
             forkJoinPool.shutdown();
@@ -224,7 +409,9 @@ public class IndexingSiteService {
         }
     }
 
-    @Transactional
+    /**
+     * Ставит страницу в очередь PageIndexQueue и сразу возвращает номер задания; загрузка и запись идут в фоне.
+     */
     public ResponseSite indexPage(String url) {
         String urlToPage = URLDecoder.decode(url.substring(url.indexOf("h")), StandardCharsets.UTF_8);
 
@@ -236,40 +423,80 @@ public class IndexingSiteService {
 
         Sites sitesConfig = siteConfigOptional.get();
         log.info("сайт найден в конфигурационном файле: {}", sitesConfig.getName());
+        return pageIndexQueue.submit(urlToPage, sitesConfig);
+    }
 
-        if (checkIndexingPage(urlToPage, sitesConfig)) {
-            log.info("Cтраница {} есть в базе данных", urlToPage);
-            String pageToDelete = urlToPage.substring(sitesConfig.getUrl().length());
-            pageRepository.deletePageByPath(pageToDelete);
-            log.info("Все данные которые были связаны со страницей: {} удалены", urlToPage);
+    /**
+     * Состояние задания очереди; завершённые задания хранятся, пока их не вытеснят ticketsKept более новых.
+     */
+    public ResponseSite indexPageStatus(String ticket) {
+        ResponseIndexPage status = pageIndexQueue.status(ticket);
+        return status != null ? status : new ResponseSite(false, "Задание не найдено");
+    }
+
+    /**
+     * Ставит в очередь список адресов и адреса из sitemap, ждёт их записи не дольше bulkTimeoutSeconds
+     * (но не больше MAX_BULK_WAIT_SECONDS) и возвращает итог по каждому адресу: незавершённые задания
+     * возвращаются с номером для /api/indexPage/{ticket}. Сайт из конфигурации ищется по хосту адреса.
+     */
+    public ResponseSite indexPages(IndexPagesRequest request) {
+        long started = System.currentTimeMillis();
+        AppConfigProperties.PageQueue settings = connectionSetting.getPageQueue();
+        Set<String> urls = new LinkedHashSet<>();
+        if (request.urls() != null) {
+            request.urls().stream()
+                    .filter(Objects::nonNull)
+                    .map(String::trim)
+                    .filter(url -> !url.isEmpty())
+                    .forEach(urls::add);
+        }
+        if (request.sitemap() != null && !request.sitemap().isBlank()) {
+            try {
+                urls.addAll(sitemapReader.read(request.sitemap().trim(), settings.getMaxBulkUrls()));
+            } catch (IOException e) {
+                log.error("Не удалось прочитать sitemap {}: {}", request.sitemap(), e.getMessage());
+                return new ResponseSite(false, "Не удалось прочитать sitemap: " + e.getMessage());
+            }
+        }
+        if (urls.isEmpty()) {
+            return new ResponseSite(false, "Не переданы адреса страниц");
+        }
+        if (urls.size() > settings.getMaxBulkUrls()) {
+            return new ResponseSite(false, "Слишком много адресов: " + urls.size() + ", допустимо " + settings.getMaxBulkUrls());
         }
 
-        Site site = siteRepository.findByUrl(sitesConfig.getUrl());
-        if (site == null) {
-            site = createSite(sitesConfig);
-            log.info("Сайт отсутствует в БД, создался новый сайт: {}", site.getName());
+        Map<String, List<Sites>> sitesByHost = sitesList.getSites().stream()
+                .collect(Collectors.groupingBy(sitesConfig -> SitemapReader.hostOf(sitesConfig.getUrl())));
+        List<ResponseIndexPage> submitted = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            Optional<Sites> sitesConfig = sitesByHost.getOrDefault(SitemapReader.hostOf(url), List.of()).stream()
+                    .filter(config -> url.startsWith(config.getUrl()))
+                    .findFirst();
+            submitted.add(sitesConfig.isPresent()
+                    ? pageIndexQueue.submit(url, sitesConfig.get())
+                    : new ResponseIndexPage(null, url, PageTicketStatus.FAILED,
+                    "Данная страница находится за переделами конфигурационных файлов", null, null));
         }
 
+        List<String> tickets = submitted.stream().map(ResponseIndexPage::getTicket).filter(Objects::nonNull).toList();
+        int waitSeconds = Math.max(0, Math.min(settings.getBulkTimeoutSeconds(), MAX_BULK_WAIT_SECONDS));
         try {
-            Page pages = new SiteCrawler(sitesConfig.getUrl(), urlToPage, connectionSetting,indexingInProgress).computePage();
-            log.info("Страница проиндексирована: {}", urlToPage);
-            pages.setSite(site);
-
-            Pair<List<Lemma>, List<Index>> lemmaAndIndex = findLemmaForSinglePage(pages, site);
-
-            site.setLemmaList(lemmaAndIndex.getLeft());
-            log.info("Найдено лемм: {}", lemmaAndIndex.getLeft().size());
-            site.setStatus(INDEXED);
-            site.setError("");
-
-            singlePageInsert.singlePageInsert(site, pages, lemmaAndIndex);
-
-        } catch (Exception e) {
-            log.error(e.getMessage());
-            site.setError(e.getMessage());
-            siteRepository.save(site);
+            if (!pageIndexQueue.await(tickets, TimeUnit.SECONDS.toMillis(waitSeconds))) {
+                log.info("Не все страницы записаны за {} с, в очереди {}", waitSeconds, pageIndexQueue.pendingCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return new ResponseSite(true);
+        List<ResponseIndexPage> outcomes = submitted.stream()
+                .map(page -> page.getTicket() == null
+                        ? page
+                        : Objects.requireNonNullElse(pageIndexQueue.status(page.getTicket()), page))
+                .toList();
+        ResponseIndexPages response = new ResponseIndexPages(outcomes, System.currentTimeMillis() - started);
+        log.info("Пакетная переиндексация: адресов {}, записано {}, ошибок {}, за {} мс ({} стр/с)",
+                response.getTotal(), response.getIndexed(), response.getFailed(), response.getElapsedMs(),
+                String.format("%.1f", response.getPagesPerSecond()));
+        return response;
     }
 
     private Optional<Sites> checkPageToSiteConfig(String url) {
@@ -278,36 +505,6 @@ public class IndexingSiteService {
                 .findFirst();
     }
 
-    private boolean checkIndexingPage(String url, Sites sitesConfig) {
-        String path = url.substring(sitesConfig.getUrl().length());
-        return pageRepository.existsByPath(path);
-    }
-
-    private Pair<List<Lemma>, List<Index>> findLemmaForSinglePage(Page page, Site site) {
-        Map<String, Lemma> lemmasMap = new HashMap<>();
-        List<Index> indexes = new ArrayList<>();
-
-        Map<String, Integer> extractedLemmas = lemmaExtraction.searchLemma(page.getContent());
-
-        for (Map.Entry<String, Integer> entry : extractedLemmas.entrySet()) {
-            String lemmaText = entry.getKey();
-            int frequency = entry.getValue();
-
-            Lemma newLemma = new Lemma();
-            newLemma.setSite(site);
-            newLemma.setLemma(lemmaText);
-            newLemma.setFrequency(1);
-            lemmasMap.put(lemmaText, newLemma);
-
-            Index index = new Index();
-            index.setPage(page);
-            index.setLemma(newLemma);
-            index.setRank((float) frequency);
-            indexes.add(index);
-        }
-        return Pair.of(new ArrayList<>(lemmasMap.values()), indexes);
-    }
-
     public ResponseSite systemSearch(String query, String siteUrl, Integer offset, Integer limit) {
         if (query.isBlank()) {
             return new ResponseEmptySearchQuery(false, "Пустой поисковый запрос");
@@ -324,25 +521,16 @@ public class IndexingSiteService {
                 return new ResponseSearch(true, 0, List.of());
             }
 
-            List<Page> pages = indexRepository.findPagesByLemma(filterLemma.get(0).getLemma());
-
-            for (Lemma lemma : filterLemma) {
-                List<Page> pageWithLemma = indexRepository.findPagesByLemma(lemma.getLemma());
-                pages = pages.stream()
-                        .filter(pageWithLemma::contains)
-                        .toList();
-            }
-            
-            List<PageRelevance> resultRelevance = calculatedRelevance(filterLemma);
+            boolean exactPhrase = isQuotedPhrase(query);
+            List<PageRelevance> resultRelevance = calculatedRelevance(filterLemma, lemmaExtraction.searchLemmaPositions(query), exactPhrase);
             resultRelevance.sort(Comparator.comparing(PageRelevance::absoluteRelevance).reversed());
 
-            List<ResultSearchRequest> resultSearchRequestList = createdRequest(resultRelevance, query);
-
-            int totalResultSearchCount = resultSearchRequestList.size();
-            List<ResultSearchRequest> paginationResult = resultSearchRequestList.stream()
+            int totalResultSearchCount = resultRelevance.size();
+            List<PageRelevance> paginationRelevance = resultRelevance.stream()
                     .skip(offset)
                     .limit(limit)
                     .toList();
+            List<ResultSearchRequest> paginationResult = createdRequest(paginationRelevance, query);
             return new ResponseSearch(true, totalResultSearchCount, paginationResult);
         } catch (Exception e) {
             log.error("Ошибка при поиске {} :", e.getMessage());
@@ -351,50 +539,41 @@ public class IndexingSiteService {
 
     }
 
-    private List<PageRelevance> calculatedRelevance(List<Lemma> filterLemma) {
-        List<PageRelevance> resultRelevance = new ArrayList<>();
-        Map<Page, Double> pageToRelevance = new HashMap<>();
-
-        List<Integer> lemmaIds = filterLemma.stream()
-                .mapToInt(Lemma::getId)
-                .boxed()
-                .toList();
-
-        List<Index> indexList = indexRepository.findByLemmaIdIn(lemmaIds);
-        for (Index index : indexList) {
-            Page page = index.getPage();
-            double rank = index.getRank();
-            pageToRelevance.put(page, pageToRelevance.getOrDefault(page, 0.0) + rank);
-        }
-
-        double maxAbsoluteRelevance = pageToRelevance.values().stream()
-                .mapToDouble(Double::doubleValue) 
-                .max()
-                .orElse(0.1);
+    /**
+     * Запрос в двойных кавычках ищется как точная фраза.
+     */
+    private static boolean isQuotedPhrase(String query) {
+        String trimmed = query.strip();
+        return trimmed.length() > 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"");
+    }
 
-        for (Map.Entry<Page, Double> entry : pageToRelevance.entrySet()) {
-            Page page = entry.getKey();
-            double absoluteRelevance = entry.getValue();
-            double relativeRelevance = absoluteRelevance / maxAbsoluteRelevance;
-            resultRelevance.add(new PageRelevance(page, absoluteRelevance, relativeRelevance));
+    /**
+     * queryPositions - позиции лемм в самом запросе, по ним проверяется порядок и расстояние слов на странице.
+     */
+    private List<PageRelevance> calculatedRelevance(List<Lemma> filterLemma, Map<String, int[]> queryPositions, boolean exactPhrase) {
+        Map<Integer, Integer> queryOffsets = new LinkedHashMap<>();
+        for (Lemma lemma : filterLemma) {
+            int[] positions = queryPositions.get(lemma.getLemma());
+            if (positions != null) {
+                queryOffsets.put(lemma.getId(), positions[0]);
+            }
         }
-
-        return resultRelevance;
+        return RelevanceRanking.rank(indexStorage.findPostings(filterLemma, queryOffsets.size() > 1), queryOffsets, exactPhrase);
     }
 
     private List<Lemma> calculatingLemmasOnPages(Set<String> lemmas, Site site) {
-        long totalPages = pageRepository.count(); 
+        long totalPages = indexStorage.countServingPages(); 
         double threshold = 0.7;
         Map<String, Lemma> bestLemmas = new HashMap<>();
         
         for (String lemma1 : lemmas) { 
-            List<Lemma> lemmaList = site == null ? lemmaRepository.findByLemma(lemma1): lemmaRepository.findByLemmaToSiteId(lemma1, site);
+            List<Lemma> lemmaList = indexStorage.findLemmas(lemma1, site);
 
             for (Lemma currentLemma : lemmaList) { 
                 if (currentLemma != null) {
                     long countPageToLemma = currentLemma.getFrequency();
                     double lemmaTotalPages = countPageToLemma / totalPages;
-                    if (lemmaTotalPages <= threshold) {
+                    if (countPageToLemma > 0 && lemmaTotalPages <= threshold) {
                         bestLemmas.merge(
                                 currentLemma.getLemma(),
                                 currentLemma,
@@ -409,17 +588,19 @@ public class IndexingSiteService {
                 collect(Collectors.toList());
     }
 
-        private List<ResultSearchRequest> createdRequest(List<PageRelevance> pageRelevance, String query) {
+    /**
+     * Текст страниц читается из хранилища одним обращением и только для выдаваемой страницы результатов.
+     */
+    private List<ResultSearchRequest> createdRequest(List<PageRelevance> pageRelevance, String query) {
+        List<Integer> pageIds = pageRelevance.stream().map(page -> page.page().getId()).toList();
+        Map<Integer, String> texts = indexStorage.findTexts(pageIds);
         return pageRelevance.stream()
                 .map(page -> {
                     String url = page.page().getSite().getUrl();
                     String nameUrl = page.page().getSite().getName();
                     String uri = page.page().getPath();
-                    
-                    Document document = Jsoup.parse(page.page().getContent());
-                    String title = document.title();
-
-                    String snippet = SnippetGenerator.generatedSnippet(query, page.page().getContent());
+                    String title = Objects.requireNonNullElse(page.page().getTitle(), "");
+                    String snippet = SnippetGenerator.generatedSnippet(query, Objects.requireNonNullElse(texts.get(page.page().getId()), ""));
 
                     return new ResultSearchRequest(url, nameUrl, uri, title, snippet, page.relativeRelevance());
                 }).toList();
@@ -0,0 +1,327 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.AppConfigProperties;
+import searchengine.config.Sites;
+import searchengine.dto.indexing.PageTicketStatus;
+import searchengine.dto.indexing.PageUpdate;
+import searchengine.dto.indexing.ResponseIndexPage;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.SiteRepository;
+import searchengine.sitecrawling.LemmaExtraction;
+import searchengine.sitecrawling.PageFetcher;
+import searchengine.sitecrawling.PositionCodec;
+import searchengine.sitecrawling.SiteCrawler;
+import searchengine.storage.IndexStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static searchengine.model.SiteStatus.INDEXED;
+import static searchengine.model.SiteStatus.INDEXING;
+
+/**
+ * Очередь переиндексации отдельных страниц для /api/indexPage. Запрос только ставит адрес в очередь и получает
+ * номер задания; адрес, который ещё ждёт в очереди, повторно не ставится - возвращается его задание.
+ * Один поток собирает пачки до batchSize адресов (неполную пачку ждёт lingerMs), загружает и лемматизирует
+ * страницы в fetchThreads потоках и записывает страницы каждого сайта одной транзакцией хранилища.
+ * Очередь живёт в памяти: задания, не записанные до остановки приложения, теряются.
+ */
+@Slf4j
+@Component
+public class PageIndexQueue {
+    private final SiteRepository siteRepository;
+    private final IndexStorage indexStorage;
+    private final LemmaExtraction lemmaExtraction;
+    private final PageFetcher pageFetcher;
+    private final int batchSize;
+    private final long lingerMs;
+    private final int ticketsKept;
+    /** Адреса, ждущие пачки, в порядке постановки; доступ под монитором очереди. */
+    private final Map<String, Ticket> pending = new LinkedHashMap<>();
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    /** Завершённые задания в порядке завершения; меняется только потоком очереди. */
+    private final Deque<String> finished = new ArrayDeque<>();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final ExecutorService fetchExecutor;
+    private final Thread batcher;
+
+    public PageIndexQueue(AppConfigProperties connectionSetting, SiteRepository siteRepository, IndexStorage indexStorage,
+                          LemmaExtraction lemmaExtraction, PageFetcher pageFetcher) {
+        AppConfigProperties.PageQueue settings = connectionSetting.getPageQueue();
+        this.siteRepository = siteRepository;
+        this.indexStorage = indexStorage;
+        this.lemmaExtraction = lemmaExtraction;
+        this.pageFetcher = pageFetcher;
+        this.batchSize = Math.max(1, settings.getBatchSize());
+        this.lingerMs = Math.max(0, settings.getLingerMs());
+        this.ticketsKept = Math.max(1, settings.getTicketsKept());
+        AtomicInteger fetchThreads = new AtomicInteger();
+        this.fetchExecutor = Executors.newFixedThreadPool(Math.max(1, settings.getFetchThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "page-queue-fetch-" + fetchThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batcher = new Thread(this::run, "page-queue");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    /**
+     * Ставит страницу в очередь. Если этот адрес уже ждёт пачки, возвращается существующее задание.
+     */
+    public synchronized ResponseIndexPage submit(String url, Sites sitesConfig) {
+        Ticket ticket = pending.get(url);
+        if (ticket != null) {
+            log.info("Страница {} уже ждёт в очереди, задание {}", url, ticket.id);
+            return ticket.toResponse();
+        }
+        ticket = new Ticket(UUID.randomUUID().toString(), url, sitesConfig);
+        pending.put(url, ticket);
+        tickets.put(ticket.id, ticket);
+        notifyAll();
+        log.info("Страница {} поставлена в очередь, задание {}", url, ticket.id);
+        return ticket.toResponse();
+    }
+
+    /**
+     * Состояние задания или null, если задание неизвестно или уже вытеснено из истории.
+     */
+    public ResponseIndexPage status(String ticketId) {
+        Ticket ticket = tickets.get(ticketId);
+        return ticket == null ? null : ticket.toResponse();
+    }
+
+    /**
+     * Ждёт завершения заданий не дольше timeoutMs. Возвращает false, если время вышло раньше.
+     */
+    public boolean await(Collection<String> ticketIds, long timeoutMs) throws InterruptedException {
+        CompletableFuture<?>[] done = ticketIds.stream()
+                .map(tickets::get)
+                .filter(Objects::nonNull)
+                .map(ticket -> ticket.done)
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(done).get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running.set(false);
+        batcher.interrupt();
+        fetchExecutor.shutdownNow();
+        int lost = pendingCount();
+        if (lost > 0) {
+            log.warn("Очередь страниц остановлена, не обработано заданий: {}", lost);
+        }
+    }
+
+    private void run() {
+        while (running.get()) {
+            List<Ticket> batch;
+            try {
+                batch = takeBatch();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                process(batch);
+            } catch (Exception e) {
+                log.error("Ошибка обработки пачки страниц: {}", e.getMessage());
+                batch.stream().filter(ticket -> !ticket.isFinished()).forEach(ticket -> fail(ticket, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Ждёт первый адрес, затем до lingerMs добирает пачку до batchSize и забирает её из очереди.
+     */
+    private synchronized List<Ticket> takeBatch() throws InterruptedException {
+        while (pending.isEmpty()) {
+            wait();
+        }
+        long deadline = System.currentTimeMillis() + lingerMs;
+        long left;
+        while (pending.size() < batchSize && (left = deadline - System.currentTimeMillis()) > 0) {
+            wait(left);
+        }
+        List<Ticket> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<Ticket> iterator = pending.values().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            Ticket ticket = iterator.next();
+            iterator.remove();
+            ticket.status = PageTicketStatus.FETCHING;
+            batch.add(ticket);
+        }
+        return batch;
+    }
+
+    private void process(List<Ticket> batch) {
+        long started = System.currentTimeMillis();
+        Map<String, Site> sites = new HashMap<>();
+        for (Ticket ticket : batch) {
+            sites.computeIfAbsent(ticket.sitesConfig.getUrl(), url -> findSite(ticket.sitesConfig));
+        }
+
+        List<CompletableFuture<PageUpdate>> fetched = batch.stream()
+                .map(ticket -> CompletableFuture.supplyAsync(() -> fetch(ticket, sites.get(ticket.sitesConfig.getUrl())), fetchExecutor))
+                .toList();
+
+        Map<String, List<Ticket>> ticketsBySite = new LinkedHashMap<>();
+        Map<String, List<PageUpdate>> updatesBySite = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Ticket ticket = batch.get(i);
+            PageUpdate update;
+            try {
+                update = fetched.get(i).join();
+            } catch (Exception e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                log.error("Ошибка загрузки страницы {}: {}", ticket.url, cause.getMessage());
+                fail(ticket, cause.getMessage());
+                continue;
+            }
+            if (update == null) {
+                fail(ticket, "Страница не является HTML-документом или превышает допустимый размер");
+                continue;
+            }
+            ticket.status = PageTicketStatus.WRITING;
+            ticketsBySite.computeIfAbsent(ticket.sitesConfig.getUrl(), url -> new ArrayList<>()).add(ticket);
+            updatesBySite.computeIfAbsent(ticket.sitesConfig.getUrl(), url -> new ArrayList<>()).add(update);
+        }
+
+        for (Map.Entry<String, List<PageUpdate>> entry : updatesBySite.entrySet()) {
+            Site site = sites.get(entry.getKey());
+            List<Ticket> siteTickets = ticketsBySite.get(entry.getKey());
+            try {
+                site.setStatus(INDEXED);
+                site.setError("");
+                indexStorage.replacePages(site, entry.getValue());
+                siteTickets.forEach(this::complete);
+            } catch (Exception e) {
+                log.error("Ошибка записи страниц сайта {}: {}", site.getName(), e.getMessage());
+                site.setError(e.getMessage());
+                siteRepository.save(site);
+                siteTickets.forEach(ticket -> fail(ticket, e.getMessage()));
+            }
+        }
+        log.info("Пачка из {} страниц обработана за {} мс, в очереди {}", batch.size(),
+                System.currentTimeMillis() - started, pendingCount());
+    }
+
+    private Site findSite(Sites sitesConfig) {
+        Site site = siteRepository.findByUrl(sitesConfig.getUrl());
+        if (site == null) {
+            site = new Site();
+            site.setUrl(sitesConfig.getUrl());
+            site.setName(sitesConfig.getName());
+            site.setStatusTime(LocalDateTime.now());
+            site.setError("");
+            site.setStatus(INDEXING);
+            log.info("Сайт отсутствует в БД, создался новый сайт: {}", site.getName());
+        }
+        return site;
+    }
+
+    private PageUpdate fetch(Ticket ticket, Site site) {
+        Page page;
+        try {
+            page = new SiteCrawler(ticket.sitesConfig.getUrl(), ticket.url, pageFetcher, running).computePage();
+        } catch (IOException e) {
+            throw new UncheckedIOException(Objects.requireNonNullElse(e.getMessage(), e.toString()), e);
+        }
+        if (page == null) {
+            return null;
+        }
+        page.setSite(site);
+        Map<String, int[]> extractedLemmas = page.getText() == null ? Map.of() : lemmaExtraction.analyzeText(page.getText());
+        List<Lemma> lemmas = new ArrayList<>(extractedLemmas.size());
+        List<Index> indexes = new ArrayList<>(extractedLemmas.size());
+        for (Map.Entry<String, int[]> entry : extractedLemmas.entrySet()) {
+            Lemma lemma = new Lemma();
+            lemma.setSite(site);
+            lemma.setLemma(entry.getKey());
+            lemma.setFrequency(1);
+            lemmas.add(lemma);
+
+            Index index = new Index();
+            index.setPage(page);
+            index.setLemma(lemma);
+            index.setRank((float) entry.getValue().length);
+            index.setPositions(PositionCodec.encode(entry.getValue()));
+            indexes.add(index);
+        }
+        log.info("Страница {} загружена, лемм: {}", ticket.url, lemmas.size());
+        return new PageUpdate(page, lemmas, indexes);
+    }
+
+    private void complete(Ticket ticket) {
+        ticket.status = PageTicketStatus.INDEXED;
+        finish(ticket);
+    }
+
+    private void fail(Ticket ticket, String error) {
+        ticket.error = error;
+        ticket.status = PageTicketStatus.FAILED;
+        finish(ticket);
+    }
+
+    private void finish(Ticket ticket) {
+        ticket.finishedAt = LocalDateTime.now();
+        ticket.done.complete(null);
+        finished.addLast(ticket.id);
+        while (finished.size() > ticketsKept) {
+            tickets.remove(finished.removeFirst());
+        }
+    }
+
+    private static final class Ticket {
+        private final String id;
+        private final String url;
+        private final Sites sitesConfig;
+        private final LocalDateTime queuedAt = LocalDateTime.now();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile PageTicketStatus status = PageTicketStatus.QUEUED;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        private Ticket(String id, String url, Sites sitesConfig) {
+            this.id = id;
+            this.url = url;
+            this.sitesConfig = sitesConfig;
+        }
+
+        private boolean isFinished() {
+            return status == PageTicketStatus.INDEXED || status == PageTicketStatus.FAILED;
+        }
+
+        private ResponseIndexPage toResponse() {
+            return new ResponseIndexPage(id, url, status, error, queuedAt, finishedAt);
+        }
+    }
+}
@@ -9,9 +9,8 @@ import searchengine.dto.statistics.StatisticsDataDto;
 import searchengine.dto.statistics.StatisticsResponseDto;
 import searchengine.dto.statistics.TotalStatisticsDto;
 import searchengine.model.Site;
-import searchengine.repositories.LemmaRepository;
-import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.storage.IndexStorage;
 
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
@@ -20,8 +19,7 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final IndexStorage indexStorage;
     private final SiteRepository siteRepository;
     private final SitesList sites;
     @Override
@@ -39,8 +37,8 @@ public class StatisticsServiceImpl implements StatisticsService {
             item.setName(site.getName());
             item.setUrl(site.getUrl());
             Site sites = siteRepository.findByUrl(site.getUrl());
-            int pages = sites == null ? 0 : pageRepository.countPagesToSite(sites.getId());
-            int lemmas = sites == null ? 0 : lemmaRepository.countLemmaToSite(sites.getId());
+            int pages = sites == null ? 0 : indexStorage.countPages(sites);
+            int lemmas = sites == null ? 0 : indexStorage.countLemmas(sites);
             item.setPages(pages);
             item.setLemmas(lemmas);
             item.setStatus(sites == null ? "Сайт не проиндексирован" : sites.getStatus().toString());
@@ -0,0 +1,212 @@
+package searchengine.sitecrawling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.AppConfigProperties;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Кэш результатов лемматизации на диске, общий для всех сайтов и запусков.
+ * Ключ - SHA-256 текста страницы, значение - леммы текста с позициями в формате PositionCodec.
+ * В заголовке записи хранится версия анализатора: если она не совпадает с текущей (сменились словари,
+ * токенизатор или фильтр служебных слов), запись считается устаревшей и вычисляется заново.
+ * Одинаковые страницы (зеркала, общие шаблоны) лемматизируются один раз.
+ * Общий размер файлов ограничен maxSizeMb, при превышении удаляются давно не использованные записи.
+ */
+@Slf4j
+@Component
+public class AnalysisCache {
+    private static final int FORMAT_VERSION = 2;
+    private static final String SUFFIX = ".bin";
+
+    private final boolean enabled;
+    private final Path dir;
+    private final long maxSizeBytes;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long totalSize;
+
+    public AnalysisCache(AppConfigProperties connectionSetting) {
+        AppConfigProperties.AnalysisCache settings = connectionSetting.getAnalysisCache();
+        this.dir = Path.of(settings.getDir());
+        this.maxSizeBytes = settings.getMaxSizeMb() * 1024L * 1024L;
+        this.enabled = settings.isEnabled() && init();
+    }
+
+    /**
+     * Леммы текста из кэша; при промахе или другой версии анализатора они вычисляются analyzer и сохраняются на диск.
+     */
+    public Map<String, int[]> get(String text, String analyzerVersion, Function<String, Map<String, int[]>> analyzer) {
+        if (!enabled) {
+            return analyzer.apply(text);
+        }
+        String key = hash(text);
+        Path file = fileFor(key);
+        if (contains(key)) {
+            Map<String, int[]> cached = read(file, analyzerVersion);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            remove(key);
+        }
+        misses.increment();
+        Map<String, int[]> lemmas = analyzer.apply(text);
+        write(key, file, analyzerVersion, lemmas);
+        return lemmas;
+    }
+
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits.sum(), misses.sum(), entries.size(), totalSize);
+        }
+    }
+
+    public record Stats(long hits, long misses, long entries, long sizeBytes) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    /**
+     * Собирает записи, оставшиеся с прошлых запусков; порядок вытеснения - по времени изменения файлов.
+     */
+    private boolean init() {
+        try {
+            Files.createDirectories(dir);
+            List<Map.Entry<Path, BasicFileAttributes>> files = new ArrayList<>();
+            try (Stream<Path> paths = Files.walk(dir, 2)) {
+                for (Path path : (Iterable<Path>) paths::iterator) {
+                    if (path.getFileName().toString().endsWith(SUFFIX)) {
+                        files.add(Map.entry(path, Files.readAttributes(path, BasicFileAttributes.class)));
+                    }
+                }
+            }
+            files.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+            for (Map.Entry<Path, BasicFileAttributes> file : files) {
+                String name = file.getKey().getFileName().toString();
+                entries.put(name.substring(0, name.length() - SUFFIX.length()), file.getValue().size());
+                totalSize += file.getValue().size();
+            }
+            log.info("Кэш анализа страниц {}: записей {}, {} КБ", dir, entries.size(), totalSize / 1024);
+            evict();
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Кэш анализа страниц {} отключён: {}", dir, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean contains(String key) {
+        synchronized (entries) {
+            return entries.get(key) != null;
+        }
+    }
+
+    private Map<String, int[]> read(Path file, String analyzerVersion) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(analyzerVersion)) {
+                return null;
+            }
+            int count = in.readInt();
+            Map<String, int[]> lemmas = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String lemma = in.readUTF();
+                byte[] positions = new byte[in.readInt()];
+                in.readFully(positions);
+                lemmas.put(lemma, PositionCodec.decode(positions));
+            }
+            return lemmas;
+        } catch (IOException e) {
+            log.debug("Не удалось прочитать {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Запись идёт во временный файл с атомарной заменой, чтобы другие потоки не прочитали её наполовину.
+     */
+    private void write(String key, Path file, String analyzerVersion, Map<String, int[]> lemmas) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(analyzerVersion);
+                out.writeInt(lemmas.size());
+                for (Map.Entry<String, int[]> entry : lemmas.entrySet()) {
+                    byte[] positions = PositionCodec.encode(entry.getValue());
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(positions.length);
+                    out.write(positions);
+                }
+            }
+            long size = Files.size(tmp);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (entries) {
+                Long previous = entries.put(key, size);
+                totalSize += size - (previous == null ? 0 : previous);
+            }
+            evict();
+        } catch (IOException e) {
+            log.debug("Не удалось сохранить анализ в {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (entries) {
+            Long size = entries.remove(key);
+            if (size != null) {
+                totalSize -= size;
+            }
+        }
+        delete(key);
+    }
+
+    private void evict() {
+        List<String> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+            while (totalSize > maxSizeBytes && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                totalSize -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                iterator.remove();
+            }
+        }
+        evicted.forEach(this::delete);
+    }
+
+    private void delete(String key) {
+        try {
+            Files.deleteIfExists(fileFor(key));
+        } catch (IOException e) {
+            log.debug("Не удалось удалить запись кэша анализа {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Path fileFor(String key) {
+        return dir.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package searchengine.sitecrawling;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума поверх 64-битного отпечатка: около 10 бит на адрес вместо 64.
+ * Ложные срабатывания означают, что изредка страница будет пропущена как уже посещённая.
+ * Добавление одного адреса выполняется под блокировкой его полосы, поэтому повторной загрузки не бывает.
+ * Память выделяется по мере роста: когда фильтр набирает расчётное число адресов, добавляется следующий,
+ * вдвое больше, пока не исчерпан бюджет maxBitCount. После этого адреса пишутся в последний фильтр,
+ * доля ложных срабатываний растёт, и множество помечается как переполненное (isTruncated).
+ */
+@Slf4j
+public class BloomVisitedSet implements VisitedUrlSet {
+    private static final int STRIPES = 64;
+    private static final long INITIAL_BITS = 1L << 16;
+
+    private final long maxBitCount;
+    private final int hashes;
+    private final Object[] locks = new Object[STRIPES];
+    private final AtomicBoolean truncated = new AtomicBoolean();
+    private volatile Filter[] filters;
+    private volatile long allocatedBits;
+
+    public BloomVisitedSet(long maxBitCount, int hashes) {
+        this.maxBitCount = Math.max(Long.SIZE, Math.min((long) (Integer.MAX_VALUE - 8) * Long.SIZE, maxBitCount));
+        this.hashes = Math.max(1, hashes);
+        Filter first = new Filter(Math.min(this.maxBitCount, INITIAL_BITS), this.hashes);
+        this.filters = new Filter[]{first};
+        this.allocatedBits = first.bitCount;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(String url) {
+        long fingerprint = VisitedUrlSet.fingerprint(url);
+        synchronized (locks[(int) (fingerprint >>> 58)]) {
+            if (contains(fingerprint)) {
+                return false;
+            }
+            Filter[] current = filters;
+            Filter last = current[current.length - 1];
+            if (last.count.get() >= last.capacity) {
+                last = grow(last);
+            }
+            last.add(fingerprint);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean contains(String url) {
+        return contains(VisitedUrlSet.fingerprint(url));
+    }
+
+    @Override
+    public boolean isTruncated() {
+        return truncated.get();
+    }
+
+    long allocatedBits() {
+        return allocatedBits;
+    }
+
+    private boolean contains(long fingerprint) {
+        for (Filter filter : filters) {
+            if (filter.contains(fingerprint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized Filter grow(Filter full) {
+        Filter[] current = filters;
+        Filter last = current[current.length - 1];
+        if (last != full) {
+            return last;
+        }
+        long bits = Math.min(last.bitCount * 2, maxBitCount - allocatedBits);
+        if (bits < INITIAL_BITS) {
+            if (truncated.compareAndSet(false, true)) {
+                log.warn("Фильтр посещённых адресов заполнил бюджет ({} КБ): ложные срабатывания растут, обход будет неполным",
+                        allocatedBits / 8 / 1024);
+            }
+            return last;
+        }
+        Filter next = new Filter(bits, hashes);
+        Filter[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = next;
+        allocatedBits += next.bitCount;
+        filters = grown;
+        return next;
+    }
+
+    private static class Filter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashes;
+        /** Число адресов, при котором доля ложных срабатываний близка к расчётной: bitCount * ln2 / hashes. */
+        private final long capacity;
+        private final AtomicLong count = new AtomicLong();
+
+        Filter(long bitCount, int hashes) {
+            int words = (int) Math.max(1, bitCount / Long.SIZE);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = (long) words * Long.SIZE;
+            this.hashes = hashes;
+            this.capacity = Math.max(1, (long) (this.bitCount * Math.log(2) / hashes));
+        }
+
+        void add(long fingerprint) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = bitIndex(fingerprint, i);
+                long mask = 1L << bit;
+                bits.getAndUpdate((int) (bit >>> 6), value -> value | mask);
+            }
+            count.incrementAndGet();
+        }
+
+        boolean contains(long fingerprint) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = bitIndex(fingerprint, i);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Двойное хеширование: h1 + i * h2 из двух половин отпечатка.
+         */
+        private long bitIndex(long fingerprint, int i) {
+            long h1 = fingerprint & 0xffffffffL;
+            long h2 = (fingerprint >>> 32) | 1;
+            return Math.floorMod(h1 + i * h2, bitCount);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package searchengine.sitecrawling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.AppConfigProperties;
+import searchengine.model.CompressedTextConverter;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пакетная запись страниц, их содержимого, лемм и индексов через JdbcTemplate.
+ * Id страниц и лемм резервируются диапазоном в таблице id_range, поэтому строки вставляются
+ * многострочными INSERT (rewriteBatchedStatements=true в адресе БД) без чтения сгенерированных ключей.
+ * Строки пишутся кусками по chunkSize, каждый кусок - отдельная транзакция, если запись
+ * не идёт внутри уже открытой транзакции. Скорость записи копится по таблицам и выводится в report.
+ */
+@Slf4j
+@Component
+public class BulkWriter {
+    private static final String PAGE_SQL = "INSERT INTO page (id,site_id,path,path_hash,code,title,content_length,etag,last_modified,content_hash) " +
+            "VALUES (?,?,?,?,?,?,?,?,?,?)";
+    private static final String CONTENT_SQL = "INSERT INTO page_content (page_id,html,text) VALUES (?,?,?) " +
+            "ON DUPLICATE KEY UPDATE html = VALUES(html), text = VALUES(text)";
+    private static final String LEMMA_SQL = "INSERT INTO lemma (id,site_id,lemma,frequency) VALUES (?,?,?,?) " +
+            "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency)";
+    private static final String INDEX_SQL = "INSERT INTO indexes (page_id,lemma_id,`rank`,positions) VALUES (?,?,?,?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTransaction;
+    private final TransactionTemplate allocationTransaction;
+    private final int chunkSize;
+    private final Map<String, TableStats> stats = new ConcurrentHashMap<>();
+
+    public BulkWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, AppConfigProperties connectionSetting) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.allocationTransaction = new TransactionTemplate(transactionManager);
+        this.allocationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = Math.max(1, connectionSetting.getBulk().getChunkSize());
+    }
+
+    /**
+     * Вставляет новые страницы сайта и проставляет им id.
+     */
+    public void insertPages(Site site, List<Page> pages) {
+        assignIds("page", pages, (page, id) -> page.setId(id));
+        write("page", PAGE_SQL, pages, (ps, page) -> {
+            ps.setInt(1, page.getId());
+            ps.setInt(2, site.getId());
+            ps.setString(3, page.getPath());
+            ps.setString(4, page.getPathHash());
+            ps.setObject(5, page.getCode(), Types.INTEGER);
+            ps.setString(6, page.getTitle());
+            ps.setObject(7, page.getContentLength(), Types.INTEGER);
+            ps.setString(8, page.getEtag());
+            ps.setString(9, page.getLastModified());
+            ps.setString(10, page.getContentHash());
+        });
+        writeContents(pages);
+    }
+
+    /**
+     * Сохраняет сжатые HTML и текст уже записанных страниц, заменяя прежние.
+     */
+    public void writeContents(List<Page> pages) {
+        write("page_content", CONTENT_SQL, pages, (ps, page) -> {
+            ps.setInt(1, page.getId());
+            ps.setBytes(2, CompressedTextConverter.compress(page.getContent()));
+            ps.setBytes(3, CompressedTextConverter.compress(page.getText()));
+        });
+    }
+
+    /**
+     * Вставляет леммы или прибавляет их частоту к уже сохранённым с тем же (site_id, lemma) и проставляет леммам id строк БД;
+     * сайт берётся из самой леммы. Леммам без id id резервируются в id_range - единственном источнике id таблицы lemma.
+     * Если строку (site_id, lemma) уже вставил другой писатель (например, очередь /api/indexPage во время обхода),
+     * зарезервированный id пропадает, а лемме проставляется id существующей строки.
+     */
+    public void upsertLemmas(List<Lemma> lemmas) {
+        assignIds("lemma", lemmas.stream().filter(lemma -> lemma.getId() == null).toList(), (lemma, id) -> lemma.setId(id));
+        write("lemma", LEMMA_SQL, lemmas, (ps, lemma) -> {
+            ps.setInt(1, lemma.getId());
+            ps.setInt(2, lemma.getSite().getId());
+            ps.setString(3, lemma.getLemma());
+            ps.setInt(4, lemma.getFrequency());
+        });
+        for (int from = 0; from < lemmas.size(); from += chunkSize) {
+            reconcileLemmaIds(lemmas.subList(from, Math.min(lemmas.size(), from + chunkSize)));
+        }
+    }
+
+    /**
+     * Страницы и леммы индексов должны быть уже сохранены: берутся только их id.
+     */
+    public void insertIndexes(List<Index> indexes) {
+        write("indexes", INDEX_SQL, indexes, (ps, index) -> {
+            ps.setInt(1, index.getPage().getId());
+            ps.setInt(2, index.getLemma().getId());
+            ps.setFloat(3, index.getRank());
+            ps.setBytes(4, index.getPositions());
+        });
+    }
+
+    /**
+     * Выводит в лог скорость записи по таблицам с прошлого отчёта (по всем сайтам, пишущимся одновременно).
+     */
+    public void report() {
+        stats.forEach((table, tableStats) -> {
+            long rows = tableStats.rows.sumThenReset();
+            long millis = Math.max(1, tableStats.nanos.sumThenReset() / 1_000_000);
+            if (rows > 0) {
+                log.info("Запись в {}: {} строк за {} мс, {} строк/с", table, rows, millis, rows * 1000 / millis);
+            }
+        });
+    }
+
+    private <T> void write(String table, String sql, List<T> rows, RowSetter<T> setter) {
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            List<T> chunk = rows.subList(from, Math.min(rows.size(), from + chunkSize));
+            long start = System.nanoTime();
+            chunkTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setter.set(ps, chunk.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return chunk.size();
+                }
+            }));
+            TableStats tableStats = stats.computeIfAbsent(table, t -> new TableStats());
+            tableStats.rows.add(chunk.size());
+            tableStats.nanos.add(System.nanoTime() - start);
+            log.debug("Записано {} строк в {} за {} мс", chunk.size(), table, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private void reconcileLemmaIds(List<Lemma> chunk) {
+        Map<Integer, Map<String, Lemma>> bySite = new HashMap<>();
+        chunk.forEach(lemma -> bySite.computeIfAbsent(lemma.getSite().getId(), id -> new HashMap<>()).put(lemma.getLemma(), lemma));
+        bySite.forEach((siteId, byText) -> {
+            List<Object> args = new ArrayList<>(byText.size() + 1);
+            args.add(siteId);
+            args.addAll(byText.keySet());
+            jdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (" +
+                    String.join(",", Collections.nCopies(byText.size(), "?")) + ")", resultSet -> {
+                Lemma lemma = byText.get(resultSet.getString(2));
+                if (lemma != null) {
+                    lemma.setId(resultSet.getInt(1));
+                }
+            }, args.toArray());
+        });
+    }
+
+    private <T> void assignIds(String table, List<T> rows, IdSetter<T> setter) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long first = allocateIds(table, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            setter.set(rows.get(i), Math.toIntExact(first + i));
+        }
+    }
+
+    /**
+     * Резервирует count id подряд и возвращает первый. Счётчик не опускается ниже MAX(id) + 1,
+     * поэтому учитываются и строки, вставленные через JPA с AUTO_INCREMENT.
+     * Резервирование идёт в отдельной короткой транзакции, чтобы не держать блокировку id_range до конца записи.
+     */
+    private long allocateIds(String table, int count) {
+        return allocationTransaction.execute(status -> {
+            jdbcTemplate.update("INSERT IGNORE INTO id_range (table_name, next_id) VALUES (?, 1)", table);
+            return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try (PreparedStatement update = connection.prepareStatement("UPDATE id_range SET next_id = LAST_INSERT_ID(" +
+                        "GREATEST(next_id, (SELECT COALESCE(MAX(id), 0) + 1 FROM " + table + ")) + ?) WHERE table_name = ?")) {
+                    update.setInt(1, count);
+                    update.setString(2, table);
+                    update.executeUpdate();
+                }
+                try (Statement select = connection.createStatement();
+                     ResultSet resultSet = select.executeQuery("SELECT LAST_INSERT_ID()")) {
+                    resultSet.next();
+                    return resultSet.getLong(1) - count;
+                }
+            });
+        });
+    }
+
+    @FunctionalInterface
+    private interface RowSetter<T> {
+        void set(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface IdSetter<T> {
+        void set(T row, int id);
+    }
+
+    private static class TableStats {
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
@@ -0,0 +1,168 @@
+package searchengine.sitecrawling;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.Sites;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Очередь обхода сайта с приоритетами и бюджетом. Первыми обходятся ссылки с меньшей глубиной
+ * с поправкой на веса шаблонов URL, при равенстве - в порядке обнаружения.
+ * Обход заканчивается, когда очередь опустела или исчерпан бюджет сайта: глубина, число страниц или время.
+ */
+@Slf4j
+public class CrawlFrontier {
+    private static final long POLL_MILLIS = 100;
+
+    private final String siteUrl;
+    private final PriorityBlockingQueue<Entry> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+    private final Semaphore slots;
+    private final List<Weight> weights;
+    private final Integer maxDepth;
+    private final Integer maxPages;
+    private final long deadline;
+    private int dispatched;
+
+    /**
+     * maxActiveTasks - сколько страниц сайта обрабатывается одновременно; остальные ждут в очереди по приоритету.
+     */
+    public CrawlFrontier(Sites site, int maxActiveTasks) {
+        this.siteUrl = site.getUrl();
+        this.slots = new Semaphore(Math.max(1, maxActiveTasks));
+        this.weights = site.getUrlWeights().stream()
+                .map(urlWeight -> new Weight(Pattern.compile(urlWeight.getPattern()), urlWeight.getWeight()))
+                .toList();
+        this.maxDepth = site.getMaxDepth();
+        this.maxPages = site.getMaxPages();
+        this.deadline = site.getMaxDurationMinutes() == null
+                ? Long.MAX_VALUE
+                : System.nanoTime() + TimeUnit.MINUTES.toNanos(site.getMaxDurationMinutes());
+    }
+
+    public boolean allowsDepth(int depth) {
+        return maxDepth == null || depth <= maxDepth;
+    }
+
+    public void offer(String url, int depth) {
+        queue.add(new Entry(url, depth, depth - weight(url), sequence.getAndIncrement()));
+    }
+
+    /**
+     * Запускает задачи обхода в порядке приоритета, пока очередь не опустеет, обход не остановят или не кончится бюджет.
+     * Возвращает true, если обойдены все найденные ссылки.
+     */
+    public boolean run(CrawlSession session, ForkJoinPool pool) throws InterruptedException {
+        while (session.isActive()) {
+            if (isBudgetExhausted()) {
+                log.info("Сайт {}: исчерпан бюджет обхода, обработано {} страниц, в очереди осталось {} ссылок",
+                        siteUrl, dispatched, queue.size());
+                awaitRunning();
+                return false;
+            }
+            NextEntry next = new NextEntry();
+            ForkJoinPool.managedBlock(next);
+            if (next.entry == null) {
+                if (running.get() == 0 && queue.isEmpty()) {
+                    return true;
+                }
+                continue;
+            }
+            dispatched++;
+            running.incrementAndGet();
+            try {
+                pool.execute(new SiteCrawler(session, next.entry.url(), next.entry.depth()));
+            } catch (RejectedExecutionException e) {
+                finished();
+                break;
+            }
+        }
+        awaitRunning();
+        return false;
+    }
+
+    /**
+     * Вызывается задачей SiteCrawler после обработки страницы, когда найденные на ней ссылки уже в очереди.
+     */
+    void finished() {
+        running.decrementAndGet();
+        slots.release();
+    }
+
+    private boolean isBudgetExhausted() {
+        return (maxPages != null && dispatched >= maxPages) || System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * run() вызывается из потока ForkJoinPool, поэтому ожидание оформлено как ManagedBlocker:
+     * пока поток ждёт, пул может подключить запасной для задач SiteCrawler.
+     */
+    private void awaitRunning() throws InterruptedException {
+        ForkJoinPool.managedBlock(new RunningTasks());
+    }
+
+    private double weight(String url) {
+        for (Weight weight : weights) {
+            if (weight.pattern().matcher(url).find()) {
+                return weight.value();
+            }
+        }
+        return 0;
+    }
+
+    private record Weight(Pattern pattern, double value) {
+    }
+
+    private record Entry(String url, int depth, double priority, long order) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byPriority = Double.compare(priority, other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * Ждёт, пока закончатся запущенные задачи обхода, проверяя счётчик раз в POLL_MILLIS.
+     */
+    private class RunningTasks implements ForkJoinPool.ManagedBlocker {
+        @Override
+        public boolean block() throws InterruptedException {
+            TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+            return isReleasable();
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return running.get() == 0;
+        }
+    }
+
+    /**
+     * Ждёт свободный слот и следующую ссылку; если ссылки пока нет, слот возвращается.
+     */
+    private class NextEntry implements ForkJoinPool.ManagedBlocker {
+        private Entry entry;
+        private boolean done;
+
+        @Override
+        public boolean block() throws InterruptedException {
+            slots.acquire();
+            entry = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (entry == null) {
+                slots.release();
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package searchengine.sitecrawling;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Журнал фронтира обхода сайта на диске, только дозапись.
+ * Строка "Q глубина url" пишется, когда ссылка поставлена в обход, "D url" - когда страница сохранена в БД.
+ * После остановки или падения приложения обход продолжается со ссылок, у которых есть Q, но нет D.
+ * Записи сбрасываются на диск пачками по FLUSH_LINES строк или не реже раза в FLUSH_MILLIS при следующей записи;
+ * порядок строк сохраняется, поэтому при падении теряется только хвост и часть страниц обходится повторно.
+ * В памяти держатся только ожидающие ссылки; сохранённые читаются из файла при продолжении обхода (forEachDone).
+ */
+@Slf4j
+public class CrawlFrontierLog implements Closeable {
+    private static final String QUEUED = "Q ";
+    private static final String DONE = "D ";
+    private static final int FLUSH_LINES = 512;
+    private static final long FLUSH_MILLIS = 1000;
+
+    private final Path file;
+    private final Map<String, Integer> pending;
+    private final BufferedWriter writer;
+    private int unflushed;
+    private long flushedAt = System.currentTimeMillis();
+    private boolean closed;
+
+    private CrawlFrontierLog(Path file, Map<String, Integer> pending) throws IOException {
+        this.file = file;
+        this.pending = pending;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public static boolean exists(Path dir, String siteUrl) {
+        return Files.exists(fileFor(dir, siteUrl));
+    }
+
+    /**
+     * Открывает журнал сайта. При resume = false прежний журнал отбрасывается.
+     * Ссылка попадает в журнал с Q раньше, чем с D, поэтому D просто убирает её из ожидающих.
+     */
+    public static CrawlFrontierLog open(Path dir, String siteUrl, boolean resume) throws IOException {
+        Files.createDirectories(dir);
+        Path file = fileFor(dir, siteUrl);
+        Map<String, Integer> queued = new LinkedHashMap<>();
+        int done = 0;
+        if (resume && Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(QUEUED)) {
+                        String[] depthAndUrl = line.substring(QUEUED.length()).split(" ", 2);
+                        if (depthAndUrl.length == 2 && depthAndUrl[0].chars().allMatch(Character::isDigit)) {
+                            queued.putIfAbsent(depthAndUrl[1], Integer.parseInt(depthAndUrl[0]));
+                        } else {
+                            queued.putIfAbsent(line.substring(QUEUED.length()), 0);
+                        }
+                    } else if (line.startsWith(DONE)) {
+                        queued.remove(line.substring(DONE.length()));
+                        done++;
+                    }
+                }
+            }
+            compact(file, queued);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        log.info("Журнал обхода {}: сохранено страниц {}, ожидают обхода {}", file, done, queued.size());
+        return new CrawlFrontierLog(file, queued);
+    }
+
+    /**
+     * Передаёт consumer адреса страниц, уже сохранённых в БД, читая их из файла журнала.
+     */
+    public synchronized void forEachDone(Consumer<String> consumer) throws IOException {
+        flush();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(DONE)) {
+                    consumer.accept(line.substring(DONE.length()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Ссылки, ожидающие обхода, с глубиной, на которой они найдены.
+     */
+    public Map<String, Integer> getPending() {
+        return pending;
+    }
+
+    public void enqueued(String url, int depth) {
+        append(QUEUED, depth + " " + url);
+    }
+
+    public void done(String url) {
+        append(DONE, url);
+    }
+
+    /**
+     * Обход завершён полностью - журнал больше не нужен.
+     */
+    public void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить журнал обхода {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть журнал обхода {}: {}", file, e.getMessage());
+        }
+    }
+
+    private synchronized void append(String type, String url) {
+        if (closed) {
+            return;
+        }
+        try {
+            writer.write(type);
+            writer.write(url);
+            writer.newLine();
+            if (++unflushed >= FLUSH_LINES || System.currentTimeMillis() - flushedAt >= FLUSH_MILLIS) {
+                flush();
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось записать в журнал обхода {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+        writer.flush();
+        unflushed = 0;
+        flushedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Переписывает журнал: строки D переносятся как есть, из строк Q остаются только ожидающие ссылки.
+     */
+    private static void compact(Path file, Map<String, Integer> pending) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(DONE)) {
+                    out.write(line);
+                    out.newLine();
+                }
+            }
+            for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                out.write(QUEUED + entry.getValue() + " " + entry.getKey());
+                out.newLine();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path fileFor(Path dir, String siteUrl) {
+        return dir.resolve(siteUrl.replaceAll("[^a-zA-Z0-9]+", "_") + ".log");
+    }
+}
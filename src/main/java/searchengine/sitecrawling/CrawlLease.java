@@ -0,0 +1,39 @@
+package searchengine.sitecrawling;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Аренда сайта, которую держит этот узел. Обход сайта продолжается, только пока аренда действительна:
+ * она считается потерянной, если продление в БД не удалось или последнее продление старше срока аренды.
+ */
+public class CrawlLease {
+    @Getter
+    private final String siteUrl;
+    /** Сайт забран у узла, аренда которого истекла, - данные прежнего обхода остаются в БД. */
+    @Getter
+    private final boolean takenOver;
+    private final long durationNanos;
+    private volatile long validUntil;
+    private volatile boolean lost;
+
+    public CrawlLease(String siteUrl, boolean takenOver, int leaseSeconds) {
+        this.siteUrl = siteUrl;
+        this.takenOver = takenOver;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(leaseSeconds);
+        renewed();
+    }
+
+    public boolean isValid() {
+        return !lost && System.nanoTime() - validUntil < 0;
+    }
+
+    public void renewed() {
+        validUntil = System.nanoTime() + durationNanos;
+    }
+
+    public void lost() {
+        lost = true;
+    }
+}
@@ -0,0 +1,48 @@
+package searchengine.sitecrawling;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import searchengine.dto.indexing.KnownPage;
+import searchengine.model.Page;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Общее состояние обхода одного сайта, которое разделяют все задачи SiteCrawler.
+ */
+@Getter
+@Setter
+@RequiredArgsConstructor
+public class CrawlSession {
+    private final String headUrl;
+    private final PageFetcher pageFetcher;
+    private final AtomicBoolean indexingInProgress;
+    private VisitedUrlSet visitedUrls = new FingerprintVisitedSet(16);
+    /** Получатель загруженных страниц; если не задан, страницы возвращаются из compute() списком. */
+    private Consumer<Page> pageConsumer;
+    private CrawlFrontierLog frontier;
+    /** Очередь обхода с приоритетами и бюджетом; если не задана, ссылки обходятся рекурсивным fork. */
+    private CrawlFrontier crawlFrontier;
+    /** Страницы сайта, уже сохранённые в БД, по пути; запись удаляется, как только страница посещена. */
+    private Map<String, KnownPage> knownPages = new ConcurrentHashMap<>();
+    /** Загружает сохранённый HTML страницы по id - нужен, чтобы найти ссылки на неизменившейся странице. */
+    private Function<Integer, String> storedContent = id -> null;
+    /** Аренда сайта в режиме кластера; null, если узел работает один. */
+    private CrawlLease lease;
+    /** Признак того, что страницы больше не сохраняются (ошибка записи конвейера); тогда обход прекращается. */
+    private BooleanSupplier writeFailed = () -> false;
+
+    /**
+     * Обход продолжается, пока индексацию не остановили, аренда сайта не перешла к другому узлу
+     * и запись страниц не сломалась.
+     */
+    public boolean isActive() {
+        return indexingInProgress.get() && (lease == null || lease.isValid()) && !writeFailed.getAsBoolean();
+    }
+}
@@ -0,0 +1,152 @@
+package searchengine.sitecrawling;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Открытая адресация с линейным пробированием по массиву long. Вставки идут без блокировок (CAS) под общей
+ * блокировкой чтения; таблица начинается с небольшого размера и удваивается под блокировкой записи,
+ * пока не достигнет бюджета maxSlots. Когда и она заполнена на 90%, новые адреса считаются посещёнными,
+ * а множество помечается как переполненное (isTruncated) - обход сайта получается неполным.
+ */
+@Slf4j
+public class FingerprintVisitedSet implements VisitedUrlSet {
+    private static final long EMPTY = 0L;
+    private static final int INITIAL_SLOTS = 1 << 10;
+    private static final double GROW_LOAD = 0.75;
+    private static final double MAX_LOAD = 0.9;
+
+    private final int maxSlots;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean truncated = new AtomicBoolean();
+    private volatile AtomicLongArray table;
+
+    public FingerprintVisitedSet(long capacity) {
+        this.maxSlots = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(16, capacity)));
+        this.table = new AtomicLongArray(Math.min(maxSlots, INITIAL_SLOTS));
+    }
+
+    @Override
+    public boolean addIfAbsent(String url) {
+        long fingerprint = nonEmpty(VisitedUrlSet.fingerprint(url));
+        while (true) {
+            int slots;
+            lock.readLock().lock();
+            try {
+                AtomicLongArray current = table;
+                slots = current.length();
+                int limit = (int) (slots * (slots < maxSlots ? GROW_LOAD : MAX_LOAD));
+                Boolean added = insert(current, fingerprint, limit);
+                if (added != null) {
+                    return added;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (slots >= maxSlots) {
+                if (truncated.compareAndSet(false, true)) {
+                    log.warn("Множество посещённых адресов заполнено ({} записей, {} слотов): новые адреса пропускаются, обход будет неполным",
+                            size.get(), slots);
+                }
+                return false;
+            }
+            grow(slots);
+        }
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = nonEmpty(VisitedUrlSet.fingerprint(url));
+        lock.readLock().lock();
+        try {
+            AtomicLongArray current = table;
+            int mask = current.length() - 1;
+            int index = (int) fingerprint & mask;
+            while (true) {
+                long value = current.get(index);
+                if (value == fingerprint) {
+                    return true;
+                }
+                if (value == EMPTY) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isTruncated() {
+        return truncated.get();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    int slots() {
+        return table.length();
+    }
+
+    /**
+     * true - адрес добавлен, false - уже был, null - таблица заполнена до limit и адрес не добавлен.
+     */
+    private Boolean insert(AtomicLongArray current, long fingerprint, int limit) {
+        int mask = current.length() - 1;
+        int index = (int) fingerprint & mask;
+        while (true) {
+            long value = current.get(index);
+            if (value == fingerprint) {
+                return false;
+            }
+            if (value == EMPTY) {
+                if (size.get() >= limit) {
+                    return null;
+                }
+                if (current.compareAndSet(index, EMPTY, fingerprint)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                continue;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void grow(int slots) {
+        lock.writeLock().lock();
+        try {
+            AtomicLongArray current = table;
+            if (current.length() != slots) {
+                return;
+            }
+            AtomicLongArray grown = new AtomicLongArray(Math.min(maxSlots, slots * 2));
+            int mask = grown.length() - 1;
+            for (int i = 0; i < slots; i++) {
+                long value = current.get(i);
+                if (value != EMPTY) {
+                    int index = (int) value & mask;
+                    while (grown.get(index) != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    grown.set(index, value);
+                }
+            }
+            table = grown;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long nonEmpty(long fingerprint) {
+        return fingerprint == EMPTY ? 1L : fingerprint;
+    }
+}
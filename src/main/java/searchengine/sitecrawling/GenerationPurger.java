@@ -0,0 +1,61 @@
+package searchengine.sitecrawling;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.model.Site;
+import searchengine.storage.IndexStorage;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Фоновое удаление скрытых поколений сайта (serving = false): сначала хранилище удаляет страницы, леммы и индексы
+ * поколения, затем удаляется строка site. Если приложение остановится посреди удаления,
+ * поколение останется скрытым и будет удалено при следующей индексации сайта.
+ */
+@Slf4j
+@Component
+public class GenerationPurger {
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexStorage indexStorage;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "generation-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public GenerationPurger(JdbcTemplate jdbcTemplate, IndexStorage indexStorage) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.indexStorage = indexStorage;
+    }
+
+    public void purge(Site site) {
+        executor.execute(() -> {
+            try {
+                purgeNow(site.getId(), site.getUrl());
+            } catch (Exception e) {
+                log.error("Не удалось удалить поколение {} сайта {}: {}", site.getId(), site.getUrl(), e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void purgeNow(int siteId, String url) {
+        List<Boolean> serving = jdbcTemplate.queryForList("SELECT serving FROM site WHERE id = ?", Boolean.class, siteId);
+        if (serving.isEmpty() || serving.get(0)) {
+            return;
+        }
+        indexStorage.deleteSite(siteId);
+        if (!Thread.currentThread().isInterrupted()) {
+            jdbcTemplate.update("DELETE FROM site WHERE id = ? AND serving = 0", siteId);
+            log.info("Удалено поколение {} сайта {}", siteId, url);
+        }
+    }
+}
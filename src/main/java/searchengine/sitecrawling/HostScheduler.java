@@ -0,0 +1,268 @@
+package searchengine.sitecrawling;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.AppConfigProperties;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Вежливый обход: для каждого хоста ограничивает число одновременных запросов
+ * и их частоту (token bucket), учитывает Disallow и Crawl-delay из robots.txt.
+ * Частота подстраивается под хост: после 429/503 снижается вдвое,
+ * после успешных ответов постепенно возвращается к настроенному максимуму.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HostScheduler {
+    private final AppConfigProperties connectionSetting;
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * robotsLoader получает адрес robots.txt и возвращает правила; вызывается один раз на хост за robotsTtlMinutes.
+     */
+    public boolean isAllowed(URI uri, Function<URI, RobotsRules> robotsLoader) {
+        if (!connectionSetting.getPoliteness().isRespectRobots()) {
+            return true;
+        }
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        return state(uri, robotsLoader).robots().isAllowed(path);
+    }
+
+    public void acquire(URI uri, Function<URI, RobotsRules> robotsLoader) throws InterruptedException {
+        HostState state = state(uri, robotsLoader);
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                state.permits.acquire();
+                try {
+                    long waitNanos = state.reserveToken();
+                    if (waitNanos > 0) {
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    }
+                } catch (InterruptedException e) {
+                    state.permits.release();
+                    throw e;
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return false;
+            }
+        });
+    }
+
+    public void release(URI uri, int statusCode) {
+        HostState state = hosts.get(hostKey(uri));
+        if (state == null) {
+            return;
+        }
+        if (statusCode == 429 || statusCode == 503) {
+            state.slowDown();
+        } else if (statusCode > 0 && statusCode < 500) {
+            state.speedUp();
+        }
+        state.permits.release();
+    }
+
+    /**
+     * Состояние хоста создаётся без сетевых запросов, поэтому computeIfAbsent не держит блокировку карты на время загрузки.
+     * robots.txt загружается вне карты: один поток загружает, остальные потоки этого хоста ждут его CompletableFuture.
+     * Через robotsTtlMinutes правила загружаются заново; пока идёт обновление, действуют прежние.
+     */
+    private HostState state(URI uri, Function<URI, RobotsRules> robotsLoader) {
+        HostState state = hosts.computeIfAbsent(hostKey(uri), host -> createState(uri));
+        if (connectionSetting.getPoliteness().isRespectRobots()) {
+            loadRobots(state, uri, robotsLoader);
+        }
+        return state;
+    }
+
+    private HostState createState(URI uri) {
+        AppConfigProperties.Politeness politeness = connectionSetting.getPoliteness();
+        AppConfigProperties.HostLimits limits = politeness.getHosts().get(uri.getHost().toLowerCase(Locale.ROOT));
+
+        int maxConcurrent = limits != null && limits.getMaxConcurrent() != null ? limits.getMaxConcurrent() : politeness.getMaxConcurrentPerHost();
+        double maxRate = limits != null && limits.getRequestsPerSecond() != null ? limits.getRequestsPerSecond() : politeness.getRequestsPerSecond();
+        log.info("Хост {}: до {} запросов одновременно, до {} запросов в секунду", uri.getHost(), maxConcurrent, maxRate);
+        return new HostState(uri.getHost(), maxConcurrent, maxRate, politeness.getMinRequestsPerSecond());
+    }
+
+    private void loadRobots(HostState state, URI uri, Function<URI, RobotsRules> robotsLoader) {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(connectionSetting.getPoliteness().getRobotsTtlMinutes());
+        RobotsLoad current = state.robotsLoad.get();
+        long now = System.currentTimeMillis();
+        if (current != null && !current.rules.isDone()) {
+            if (current.stale == null) {
+                awaitRobots(current.rules);
+            }
+            return;
+        }
+        if (current != null && now - current.loadedAt < ttlMillis) {
+            return;
+        }
+        RobotsLoad next = new RobotsLoad(new CompletableFuture<>(), now, current == null ? null : current.rules.join());
+        if (!state.robotsLoad.compareAndSet(current, next)) {
+            loadRobots(state, uri, robotsLoader);
+            return;
+        }
+        RobotsRules rules = RobotsRules.ALLOW_ALL;
+        try {
+            rules = robotsLoader.apply(uri.resolve("/robots.txt"));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось загрузить robots.txt хоста {}: {}", uri.getHost(), e.getMessage());
+            rules = next.stale == null ? RobotsRules.ALLOW_ALL : next.stale;
+        } finally {
+            state.applyRobots(rules);
+            next.rules.complete(rules);
+        }
+    }
+
+    /**
+     * Ожидание чужой загрузки robots.txt оформлено как ManagedBlocker, чтобы пул обхода подключил запасной поток.
+     */
+    private static void awaitRobots(CompletableFuture<RobotsRules> rules) {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    try {
+                        rules.get();
+                    } catch (ExecutionException ignored) {
+                        // загрузка завершает future только обычным значением
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return rules.isDone();
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String hostKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /**
+     * stale - правила предыдущей загрузки, действующие, пока загружаются новые.
+     */
+    private record RobotsLoad(CompletableFuture<RobotsRules> rules, long loadedAt, RobotsRules stale) {
+    }
+
+    private static class HostState {
+        private final String host;
+        private final AtomicReference<RobotsLoad> robotsLoad = new AtomicReference<>();
+        private final HostPermits permits;
+        private final int configuredConcurrent;
+        private final double configuredRate;
+        private final double configuredMinRate;
+        private int maxConcurrent;
+        private double maxRate;
+        private double minRate;
+        private double rate;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        HostState(String host, int maxConcurrent, double maxRate, double minRate) {
+            this.host = host;
+            this.configuredConcurrent = Math.max(1, maxConcurrent);
+            this.configuredRate = maxRate;
+            this.configuredMinRate = minRate;
+            this.permits = new HostPermits(configuredConcurrent);
+            this.maxConcurrent = configuredConcurrent;
+            this.maxRate = maxRate;
+            this.minRate = Math.min(minRate, maxRate);
+            this.rate = maxRate;
+            this.tokens = 1;
+        }
+
+        RobotsRules robots() {
+            RobotsLoad load = robotsLoad.get();
+            if (load == null) {
+                return RobotsRules.ALLOW_ALL;
+            }
+            if (!load.rules.isDone()) {
+                // пока правила обновляются, действуют прежние; если прежних нет, ожидание было прервано - адрес не обходим
+                return load.stale != null ? load.stale : RobotsRules.DISALLOW_ALL;
+            }
+            return load.rules.join();
+        }
+
+        /**
+         * Crawl-delay ограничивает хост одним запросом одновременно и частотой 1 / Crawl-delay;
+         * если после обновления robots.txt задержки нет, возвращаются настроенные ограничения.
+         */
+        synchronized void applyRobots(RobotsRules rules) {
+            double delay = rules.getCrawlDelaySeconds();
+            int targetConcurrent = delay > 0 ? 1 : configuredConcurrent;
+            double targetRate = delay > 0 ? Math.min(configuredRate, 1.0 / delay) : configuredRate;
+            if (targetConcurrent < maxConcurrent) {
+                permits.reduce(maxConcurrent - targetConcurrent);
+            } else if (targetConcurrent > maxConcurrent) {
+                permits.release(targetConcurrent - maxConcurrent);
+            }
+            if (targetConcurrent != maxConcurrent || targetRate != maxRate) {
+                log.info("Хост {} по robots.txt: до {} запросов одновременно, до {} запросов в секунду", host, targetConcurrent, targetRate);
+            }
+            maxConcurrent = targetConcurrent;
+            maxRate = targetRate;
+            minRate = Math.min(configuredMinRate, maxRate);
+            rate = Math.min(rate, maxRate);
+        }
+
+        /**
+         * Забирает токен и возвращает, сколько наносекунд нужно подождать, пока он станет доступен.
+         * Токены могут уходить в минус: так ожидающие запросы выстраиваются в очередь по времени.
+         */
+        synchronized long reserveToken() {
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(1, rate), tokens + (now - lastRefill) / 1e9 * rate);
+            lastRefill = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+        }
+
+        synchronized void slowDown() {
+            rate = Math.max(minRate, rate / 2);
+        }
+
+        synchronized void speedUp() {
+            rate = Math.min(maxRate, rate + maxRate * 0.05);
+        }
+    }
+
+    /**
+     * Семафор, число разрешений которого можно уменьшить, когда robots.txt задаёт Crawl-delay.
+     */
+    private static class HostPermits extends Semaphore {
+        HostPermits(int permits) {
+            super(permits, true);
+        }
+
+        void reduce(int reduction) {
+            reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package searchengine.sitecrawling;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.AppConfigProperties;
+import searchengine.dto.indexing.LemmatizedPage;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.storage.IndexStorage;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Конвейер индексации сайта: обход -> лемматизация -> пакетная запись в хранилище.
+ * Очереди между этапами ограничены, поэтому при медленной записи обход сайта притормаживает,
+ * а в памяти одновременно находится не больше queueCapacity страниц на каждом этапе.
+ */
+@Slf4j
+public class IndexingPipeline {
+    private static final Page END_OF_PAGES = new Page();
+    private static final LemmatizedPage END_OF_LEMMAS = new LemmatizedPage(END_OF_PAGES, new int[0], new float[0], new byte[0][]);
+
+    private final Site site;
+    private final LemmaExtraction lemmaExtraction;
+    private final IndexStorage.SiteWriter siteWriter;
+    private final CrawlFrontierLog frontier;
+    private final int batchSize;
+    private final int workers;
+    private final BlockingQueue<Page> pages;
+    private final BlockingQueue<LemmatizedPage> lemmatizedPages;
+    private final LemmaDictionary dictionary = new LemmaDictionary();
+    private final AtomicInteger activeWorkers;
+    private final ExecutorService lemmaExecutor;
+    private final ExecutorService writerExecutor;
+    private final Future<?> writer;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * frontier - журнал обхода, в который отмечаются сохранённые страницы; может быть null.
+     * existing - у сайта уже есть сохранённые данные (повторный или продолженный обход).
+     */
+    public IndexingPipeline(Site site, LemmaExtraction lemmaExtraction, IndexStorage indexStorage,
+                            AppConfigProperties.Pipeline settings, CrawlFrontierLog frontier, boolean existing) {
+        this.site = site;
+        this.lemmaExtraction = lemmaExtraction;
+        this.siteWriter = indexStorage.openWriter(site, existing, dictionary);
+        this.frontier = frontier;
+        this.batchSize = settings.getBatchSize();
+        this.workers = settings.getLemmaWorkers();
+        this.pages = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        this.lemmatizedPages = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        this.activeWorkers = new AtomicInteger(workers);
+
+        lemmaExecutor = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            lemmaExecutor.execute(this::lemmatize);
+        }
+        writerExecutor = Executors.newSingleThreadExecutor();
+        writer = writerExecutor.submit(this::write);
+    }
+
+    public void submit(Page page) {
+        try {
+            pages.put(page);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Страница {} не передана на индексацию: поток прерван", page.getPath());
+        }
+    }
+
+    /**
+     * Ошибка записи, после которой конвейер перестал сохранять страницы, или null.
+     */
+    public Throwable getFailure() {
+        return failure.get();
+    }
+
+    public boolean isFailed() {
+        return failure.get() != null;
+    }
+
+    /**
+     * Дожидается, пока все переданные страницы будут лемматизированы и сохранены.
+     * Ошибка записи не теряется: её возвращает getFailure, и сайт нельзя считать проиндексированным.
+     */
+    public void finish() {
+        try {
+            for (int i = 0; i < workers; i++) {
+                pages.put(END_OF_PAGES);
+            }
+            writer.get();
+            siteWriter.close();
+            log.info("Словарь лемм сайта {}: {} лемм", site.getName(), dictionary.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Ожидание записи сайта {} прервано", site.getName());
+        } catch (ExecutionException e) {
+            log.error("Ошибка записи сайта {}: {}", site.getName(), e.getCause().getMessage());
+            failure.compareAndSet(null, e.getCause());
+        } catch (RuntimeException e) {
+            log.error("Ошибка записи сайта {}: {}", site.getName(), e.getMessage());
+            failure.compareAndSet(null, e);
+        } finally {
+            lemmaExecutor.shutdownNow();
+            writerExecutor.shutdownNow();
+        }
+    }
+
+    private void lemmatize() {
+        try {
+            Page page;
+            while ((page = pages.take()) != END_OF_PAGES) {
+                lemmatizedPages.put(lemmatize(page));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (activeWorkers.decrementAndGet() == 0) {
+                signalEndOfLemmas();
+            }
+        }
+    }
+
+    private LemmatizedPage lemmatize(Page page) {
+        if (page.getText() == null) {
+            return dictionary.addPage(page, Map.of());
+        }
+        try {
+            return dictionary.addPage(page, lemmaExtraction.analyzeText(page.getText()));
+        } catch (Exception e) {
+            log.error("Ошибка лемматизации страницы {}: {}", page.getPath(), e.getMessage());
+            return dictionary.addPage(page, Map.of());
+        }
+    }
+
+    private void signalEndOfLemmas() {
+        try {
+            lemmatizedPages.put(END_OF_LEMMAS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        List<LemmatizedPage> batch = new ArrayList<>(batchSize);
+        boolean finished = false;
+        while (!finished) {
+            try {
+                batch.add(lemmatizedPages.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            lemmatizedPages.drainTo(batch, batchSize - batch.size());
+            if (batch.get(batch.size() - 1) == END_OF_LEMMAS) {
+                batch.remove(batch.size() - 1);
+                finished = true;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+    /**
+     * Пачка не повторяется: после отката транзакции у её страниц уже проставлены id, и повтор записал бы их как существующие.
+     * Ошибка запоминается, а следующие пачки только вычитываются из очереди, чтобы обход не встал
+     * на заполненной очереди. Несохранённые страницы не отмечаются в журнале обхода и будут загружены при продолжении.
+     */
+    private void flush(List<LemmatizedPage> batch) {
+        if (failure.get() == null) {
+            try {
+                writeBatch(batch);
+            } catch (Exception e) {
+                log.error("Ошибка сохранения {} страниц сайта {}: {}", batch.size(), site.getName(), e.getMessage());
+                failure.compareAndSet(null, e);
+            }
+        }
+        batch.clear();
+    }
+
+    private void writeBatch(List<LemmatizedPage> batch) {
+        siteWriter.write(batch);
+        if (frontier != null) {
+            batch.forEach(lemmatizedPage -> frontier.done(site.getUrl() + lemmatizedPage.page().getPath()));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package searchengine.sitecrawling;
+
+import searchengine.dto.indexing.LemmatizedPage;
+import searchengine.model.Page;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Словарь лемм одного прохода индексации: лемма -> плотный int id и число страниц с ней (document frequency).
+ * Потоки лемматизации пополняют его параллельно, а индексы страниц ссылаются на id вместо сущностей Lemma.
+ */
+public class LemmaDictionary {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1 << 16;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicReferenceArray<Entry[]> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    public int intern(String lemma) {
+        Integer id = ids.get(lemma);
+        return id != null ? id : ids.computeIfAbsent(lemma, this::register);
+    }
+
+    /**
+     * Добавляет леммы страницы в словарь и возвращает страницу с индексами по id лемм.
+     * lemmaPositions - позиции слов каждой леммы на странице, rank индекса равен их числу.
+     */
+    public LemmatizedPage addPage(Page page, Map<String, int[]> lemmaPositions) {
+        int[] lemmaIds = new int[lemmaPositions.size()];
+        float[] ranks = new float[lemmaPositions.size()];
+        byte[][] positions = new byte[lemmaPositions.size()][];
+        int i = 0;
+        for (Map.Entry<String, int[]> lemma : lemmaPositions.entrySet()) {
+            int id = intern(lemma.getKey());
+            entry(id).documents.increment();
+            lemmaIds[i] = id;
+            ranks[i] = lemma.getValue().length;
+            positions[i] = PositionCodec.encode(lemma.getValue());
+            i++;
+        }
+        return new LemmatizedPage(page, lemmaIds, ranks, positions);
+    }
+
+    public String lemma(int id) {
+        return entry(id).lemma;
+    }
+
+    public long documentFrequency(int id) {
+        return entry(id).documents.sum();
+    }
+
+    /**
+     * Число лемм в словаре; id лежат в диапазоне [0, size).
+     */
+    public int size() {
+        return nextId.get();
+    }
+
+    private Integer register(String lemma) {
+        int id = nextId.getAndIncrement();
+        chunk(id)[id & (CHUNK_SIZE - 1)] = new Entry(lemma, new LongAdder());
+        return id;
+    }
+
+    private Entry entry(int id) {
+        return chunk(id)[id & (CHUNK_SIZE - 1)];
+    }
+
+    private Entry[] chunk(int id) {
+        int index = id >>> CHUNK_BITS;
+        Entry[] chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new Entry[CHUNK_SIZE]);
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+
+    private record Entry(String lemma, LongAdder documents) {
+    }
+}
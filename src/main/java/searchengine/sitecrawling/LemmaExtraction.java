@@ -2,80 +2,111 @@ package searchengine.sitecrawling;
 
 
 import lombok.RequiredArgsConstructor;
+import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.jsoup.Jsoup;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
+import java.security.CodeSource;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @Component
 @RequiredArgsConstructor
 public class LemmaExtraction {
     private static final String[] particlesNames = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ", "IN", "CC", "RP", "UH"};
+    /** Менять при любом изменении WordTokenizer или отбора лемм, влияющем на результат анализа текста. */
+    private static final int ANALYZER_REVISION = 1;
+    /**
+     * Версия анализатора для AnalysisCache: ревизия кода, фильтр служебных слов, минимальная длина слова
+     * и версии словарей морфологии.
+     */
+    static final String ANALYZER_VERSION = ANALYZER_REVISION
+            + ";" + String.join(",", particlesNames)
+            + ";" + WordTokenizer.MIN_WORD_LENGTH
+            + ";ru=" + libraryVersion(RussianLuceneMorphology.class)
+            + ";en=" + libraryVersion(EnglishLuceneMorphology.class);
     private final RussianLuceneMorphology russianMorphology;
     private final EnglishLuceneMorphology englishMorphology;
-    private static final String RUSSIAN_WORD_PATTERN = "^[а-я]+$";
-    private static final String ENGLISH_WORD_PATTERN = "^[a-z]+$";
+    private final MorphologyCache morphologyCache;
+    private final AnalysisCache analysisCache;
+
+    /**
+     * text - уже извлечённый из HTML текст страницы (Page.text), повторно HTML не разбирается.
+     * Значение - сколько раз слова с этой леммой встретились в тексте.
+     */
     public HashMap<String, Integer> searchLemma(String text) {
-        Set <String> words = arrayContainsWords(text);
+        Map<String, Integer> wordCounts = new HashMap<>();
+        WordTokenizer.tokenize(text, word -> wordCounts.merge(word, 1, Integer::sum));
         HashMap<String, Integer> lemmas = new HashMap<>();
-        for (String word : words) {
-            if (isRussianWord(word)) {
-                List<String> wordBaseForms = russianMorphology.getMorphInfo(word);
-                if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                    continue;
-                }
-                List<String> normalForms = russianMorphology.getNormalForms(word);
-                if (!normalForms.isEmpty()) {
-                    String normalWord = normalForms.get(0);
-                    if (normalWord.length() >= 3) {
-                        lemmas.merge(normalWord, 1, Integer::sum);
-                    }
-                }
-            } else if (isEnglishWord(word)) {
-                List<String> wordBaseForms = englishMorphology.getMorphInfo(word);
-                if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                    continue;
-                }
-                List<String> normalForms = englishMorphology.getNormalForms(word);
-                if (!normalForms.isEmpty()) {
-                    String normalWord = normalForms.get(0);
-                    if (normalWord.length() >= 3) {
-                        lemmas.merge(normalWord, 1, Integer::sum);
-                    }
+        for (Map.Entry<String, Integer> entry : wordCounts.entrySet()) {
+            List<String> normalForms = normalForms(entry.getKey());
+            if (!normalForms.isEmpty()) {
+                String normalWord = normalForms.get(0);
+                if (normalWord.length() >= 3) {
+                    lemmas.merge(normalWord, entry.getValue(), Integer::sum);
                 }
             }
         }
         return lemmas;
     }
 
-    private Set<String> arrayContainsWords(String content) {
-        String text = Jsoup.parse(content).text();
-        String[] wordsArray = text.toLowerCase(Locale.ROOT)
-                .replaceAll("([^а-яa-z\\s])", " ")
-                .trim()
-                .split("\\s+");
+    /**
+     * Леммы текста страницы с позициями через AnalysisCache: уже встречавшийся текст повторно не лемматизируется.
+     */
+    public Map<String, int[]> analyzeText(String text) {
+        return analysisCache.get(text, ANALYZER_VERSION, this::searchLemmaPositions);
+    }
+
+    /**
+     * Как searchLemma, но для каждой леммы возвращает позиции её слов в тексте по возрастанию.
+     * Позиция - порядковый номер слова среди всех слов, выделенных WordTokenizer, поэтому
+     * пропущенные служебные слова тоже занимают позицию и расстояния совпадают с текстом.
+     */
+    public Map<String, int[]> searchLemmaPositions(String text) {
+        Map<String, PositionList> positions = new HashMap<>();
+        int[] position = {0};
+        WordTokenizer.tokenize(text, word -> {
+            List<String> normalForms = normalForms(word);
+            if (!normalForms.isEmpty() && normalForms.get(0).length() >= 3) {
+                positions.computeIfAbsent(normalForms.get(0), lemma -> new PositionList()).add(position[0]);
+            }
+            position[0]++;
+        });
+        Map<String, int[]> lemmas = new HashMap<>(positions.size() * 2);
+        positions.forEach((lemma, list) -> lemmas.put(lemma, list.toArray()));
+        return lemmas;
+    }
+
+    public MorphologyCache.Stats getCacheStats() {
+        return morphologyCache.stats();
+    }
 
-        return Arrays.stream(wordsArray).
-                filter(w -> w.length() > 2 && !w.isBlank()).
-                collect(Collectors.toCollection(HashSet::new));
+    public AnalysisCache.Stats getAnalysisCacheStats() {
+        return analysisCache.stats();
     }
-    private boolean isRussianWord(String word) {
-        return word.matches(RUSSIAN_WORD_PATTERN);
+
+    /**
+     * Нормальные формы слова через общий кэш; пустой список - слово не учитывается.
+     */
+    private List<String> normalForms(String word) {
+        LuceneMorphology morphology = WordTokenizer.isEnglish(word) ? englishMorphology : russianMorphology;
+        return morphologyCache.get(word, w -> lookupNormalForms(morphology, w));
     }
-    private boolean isEnglishWord(String word) {
-        return word.matches(ENGLISH_WORD_PATTERN);
+    private List<String> lookupNormalForms(LuceneMorphology morphology, String word) {
+        if (anyWordBaseBelongToParticle(morphology.getMorphInfo(word))) {
+            return MorphologyCache.SKIP;
+        }
+        return List.copyOf(morphology.getNormalForms(word));
     }
     private boolean anyWordBaseBelongToParticle(List<String> wordBaseForms) {
         return wordBaseForms.stream().anyMatch(this::hasParticleProperty);
     }
     private boolean hasParticleProperty(String wordBase) {
+        String upperWordBase = wordBase.toUpperCase(Locale.ROOT);
         for (String property : particlesNames) {
-            if (wordBase.toUpperCase().contains(property)) {
+            if (upperWordBase.contains(property)) {
                 return true;
             }
         }
@@ -83,27 +114,45 @@ public class LemmaExtraction {
     }
 
     public Set<String> getLemmaSet(String text) {
-        Set <String> textArray = arrayContainsWords(text);
         Set<String> lemmaSet = new HashSet<>();
-        for (String word : textArray) {
-            if (!word.isEmpty() && word.length() >= 3) {
-                if (isRussianWord(word)) {
-                    List<String> wordBaseFormsRus = russianMorphology.getMorphInfo(word);
-                    if (anyWordBaseBelongToParticle(wordBaseFormsRus)) {
-                        continue;
-                    }
-                    lemmaSet.addAll(russianMorphology.getNormalForms(word));
-                }
-                else if (isEnglishWord(word)) {
-                    List<String> wordBaseFormsEng = englishMorphology.getMorphInfo(word);
-                    if ( anyWordBaseBelongToParticle(wordBaseFormsEng)) {
-                        continue;
-                    }
-                    lemmaSet.addAll(englishMorphology.getNormalForms(word));
-                }
+        Set<String> seenWords = new HashSet<>();
+        WordTokenizer.tokenize(text, word -> {
+            if (seenWords.add(word)) {
+                lemmaSet.addAll(normalForms(word));
             }
-        }
+        });
         return lemmaSet;
     }
-}
 
+    /**
+     * Версия из манифеста библиотеки, а если её нет - имя jar-файла, в котором обычно есть версия.
+     */
+    private static String libraryVersion(Class<?> type) {
+        String version = type.getPackage() == null ? null : type.getPackage().getImplementationVersion();
+        if (version != null) {
+            return version;
+        }
+        CodeSource source = type.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null) {
+            return "unknown";
+        }
+        String location = source.getLocation().toString().replaceAll("!?/+$", "");
+        return location.substring(location.lastIndexOf('/') + 1);
+    }
+
+    private static class PositionList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package searchengine.sitecrawling;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.AppConfigProperties;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Общий ограниченный кэш морфологии: слово -> его нормальные формы.
+ * Пустой список (SKIP) означает, что слово пропускается - это служебная часть речи.
+ * Кэш разбит на сегменты, в каждом своя блокировка и LRU-вытеснение,
+ * поэтому потоки лемматизации почти не мешают друг другу.
+ */
+@Component
+public class MorphologyCache {
+    public static final List<String> SKIP = List.of();
+    private static final int SEGMENTS = 64;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public MorphologyCache(AppConfigProperties connectionSetting) {
+        int segmentCapacity = Math.max(1, connectionSetting.getMorphology().getCacheSize() / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Возвращает формы слова из кэша, при промахе вычисляет их loader вне блокировки сегмента.
+     */
+    public List<String> get(String word, Function<String, List<String>> loader) {
+        Segment segment = segmentFor(word);
+        List<String> forms = segment.get(word);
+        if (forms != null) {
+            hits.increment();
+            return forms;
+        }
+        misses.increment();
+        forms = loader.apply(word);
+        segment.put(word, forms);
+        return forms;
+    }
+
+    public Stats stats() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    private Segment segmentFor(String word) {
+        int hash = word.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    public record Stats(long hits, long misses, long evictions, long size) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    private class Segment {
+        private final Map<String, List<String>> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized List<String> get(String word) {
+            return entries.get(word);
+        }
+
+        synchronized void put(String word, List<String> forms) {
+            entries.put(word, forms);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package searchengine.sitecrawling;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.indexing.LemmatizedPage;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.PageRepository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+@Service
+@RequiredArgsConstructor
+public class PageBatchInsert {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageBatchInsert.class);
+    private static final int DELETE_CHUNK = 500;
+    private static final String PAGE_BY_PATH = "p.site_id = ? AND p.path_hash = ? AND p.path = ?";
+    private final PageRepository pageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final BulkWriter bulkWriter;
+
+    /**
+     * Сохраняет пачку страниц вместе с их леммами и индексами.
+     * Индексы страниц ссылаются на id лемм в dictionary, siteLemmas - уже сохранённые леммы сайта по этим id.
+     * Частота существующих лемм увеличивается запросом UPDATE, новые леммы добавляются в siteLemmas после сохранения.
+     * Лемму, которой нет в siteLemmas, могла уже записать очередь /api/indexPage: тогда upsertLemmas прибавляет частоту
+     * к её строке и берёт её id.
+     * Страницы с заполненным id уже есть в БД (повторный обход): их старые индексы удаляются,
+     * а частоты лемм уменьшаются перед записью новых.
+     */
+    @Transactional
+    public void insertBatch(Site site, List<LemmatizedPage> batch, LemmaDictionary dictionary, SiteLemmas siteLemmas) {
+        List<Page> pages = batch.stream().map(LemmatizedPage::page).toList();
+        pages.forEach(page -> page.setSite(site));
+        List<Page> existingPages = pages.stream().filter(page -> page.getId() != null).toList();
+        removePostings(existingPages.stream().map(Page::getId).toList());
+        pageRepository.saveAll(existingPages);
+        bulkWriter.writeContents(existingPages);
+        bulkWriter.insertPages(site, pages.stream().filter(page -> page.getId() == null).toList());
+
+        Map<Integer, Lemma> newLemmas = new HashMap<>();
+        Map<Lemma, Integer> increments = new HashMap<>();
+        List<Index> indexes = new ArrayList<>();
+        for (LemmatizedPage lemmatizedPage : batch) {
+            int[] lemmaIds = lemmatizedPage.lemmaIds();
+            for (int i = 0; i < lemmaIds.length; i++) {
+                Lemma lemma = siteLemmas.get(lemmaIds[i]);
+                if (lemma == null) {
+                    lemma = newLemmas.computeIfAbsent(lemmaIds[i], id -> createLemma(site, dictionary.lemma(id)));
+                }
+                increments.merge(lemma, 1, Integer::sum);
+
+                Index index = new Index();
+                index.setPage(lemmatizedPage.page());
+                index.setLemma(lemma);
+                index.setRank(lemmatizedPage.ranks()[i]);
+                index.setPositions(lemmatizedPage.positions()[i]);
+                indexes.add(index);
+            }
+        }
+
+        newLemmas.values().forEach(lemma -> lemma.setFrequency(increments.remove(lemma)));
+        bulkWriter.upsertLemmas(new ArrayList<>(newLemmas.values()));
+        incrementFrequencies(increments);
+        bulkWriter.insertIndexes(indexes);
+
+        newLemmas.forEach(siteLemmas::put);
+        logger.info("Сохранено страниц: {}, новых лемм: {}, индексов: {} для сайта {}",
+                pages.size(), newLemmas.size(), indexes.size(), site.getName());
+    }
+
+    /**
+     * Удаляет страницы вместе с их индексами и уменьшает частоты затронутых лемм.
+     */
+    @Transactional
+    public void deletePages(List<Integer> pageIds) {
+        removePostings(pageIds);
+        forEachChunk(pageIds, (chunk, placeholders) -> {
+            jdbcTemplate.update("DELETE FROM page_content WHERE page_id IN (" + placeholders + ")", chunk.toArray());
+            jdbcTemplate.update("DELETE FROM page WHERE id IN (" + placeholders + ")", chunk.toArray());
+        });
+    }
+
+    /**
+     * Удаляет страницу сайта по пути вместе с содержимым и индексами и уменьшает частоты её лемм -
+     * четырьмя запросами с JOIN по индексу (site_id, path_hash), без выборки id и загрузки сущностей.
+     * Возвращает число удалённых страниц.
+     */
+    @Transactional
+    public int deletePageByPath(Site site, String path) {
+        Object[] key = {site.getId(), Page.hashPath(path), path};
+        jdbcTemplate.update("UPDATE lemma l JOIN (SELECT i.lemma_id, COUNT(*) AS cnt FROM indexes i JOIN page p ON p.id = i.page_id " +
+                "WHERE " + PAGE_BY_PATH + " GROUP BY i.lemma_id) d ON d.lemma_id = l.id SET l.frequency = l.frequency - d.cnt", key);
+        jdbcTemplate.update("DELETE i FROM indexes i JOIN page p ON p.id = i.page_id WHERE " + PAGE_BY_PATH, key);
+        jdbcTemplate.update("DELETE c FROM page_content c JOIN page p ON p.id = c.page_id WHERE " + PAGE_BY_PATH, key);
+        return jdbcTemplate.update("DELETE p FROM page p WHERE " + PAGE_BY_PATH, key);
+    }
+
+    /**
+     * Удаляет леммы сайта, которые после повторного обхода не встречаются ни на одной странице.
+     */
+    @Transactional
+    public int deleteUnusedLemmas(Site site) {
+        return jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? AND frequency <= 0", site.getId());
+    }
+
+    private void removePostings(List<Integer> pageIds) {
+        forEachChunk(pageIds, (chunk, placeholders) -> {
+            jdbcTemplate.update("UPDATE lemma l JOIN (SELECT lemma_id, COUNT(*) AS cnt FROM indexes WHERE page_id IN (" + placeholders + ") GROUP BY lemma_id) d " +
+                    "ON d.lemma_id = l.id SET l.frequency = l.frequency - d.cnt", chunk.toArray());
+            jdbcTemplate.update("DELETE FROM indexes WHERE page_id IN (" + placeholders + ")", chunk.toArray());
+        });
+    }
+
+    private void forEachChunk(List<Integer> ids, BiConsumer<List<Integer>, String> action) {
+        for (int from = 0; from < ids.size(); from += DELETE_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + DELETE_CHUNK));
+            action.accept(chunk, String.join(",", Collections.nCopies(chunk.size(), "?")));
+        }
+    }
+
+    private void incrementFrequencies(Map<Lemma, Integer> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Lemma, Integer>> entries = new ArrayList<>(increments.entrySet());
+        jdbcTemplate.batchUpdate("UPDATE lemma SET frequency = frequency + ? WHERE id = ?", new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Lemma, Integer> entry = entries.get(i);
+                ps.setInt(1, entry.getValue());
+                ps.setInt(2, entry.getKey().getId());
+                entry.getKey().setFrequency(entry.getKey().getFrequency() + entry.getValue());
+            }
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    private Lemma createLemma(Site site, String text) {
+        Lemma lemma = new Lemma();
+        lemma.setSite(site);
+        lemma.setLemma(text);
+        return lemma;
+    }
+}
@@ -0,0 +1,229 @@
+package searchengine.sitecrawling;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.AppConfigProperties;
+import searchengine.model.Page;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Загрузка страниц через общий неблокирующий HttpClient с переиспользованием соединений.
+ * Ожидание ответа оформлено как ForkJoinPool.ManagedBlocker: пока поток обхода ждёт сеть,
+ * пул подключает запасной поток, поэтому число одновременных запросов ограничено
+ * настройкой maxInFlight, а не количеством ядер.
+ */
+@Slf4j
+@Component
+public class PageFetcher {
+    /** Предел размера robots.txt; более длинный файл не читается и обход хоста не ограничивается. */
+    private static final long MAX_ROBOTS_BYTES = 512 * 1024;
+
+    private final AppConfigProperties connectionSetting;
+    private final HostScheduler hostScheduler;
+    private final HttpClient httpClient;
+    private final Semaphore inFlight;
+    private final Duration timeout;
+    private final ResponseGate responseGate;
+    private final ResponseGate robotsGate;
+    private final ExecutorService clientExecutor;
+
+    public PageFetcher(AppConfigProperties connectionSetting, HostScheduler hostScheduler) {
+        this.connectionSetting = connectionSetting;
+        this.hostScheduler = hostScheduler;
+        this.timeout = Duration.ofMillis(connectionSetting.getFetch().getTimeoutMs());
+        this.inFlight = new Semaphore(connectionSetting.getFetch().getMaxInFlight());
+        this.responseGate = new ResponseGate(connectionSetting.getFetch().getMaxBodySizeKb() * 1024L,
+                connectionSetting.getFetch().getAllowedContentTypes());
+        this.robotsGate = new ResponseGate(MAX_ROBOTS_BYTES, List.of("text/plain"));
+        AtomicInteger clientThreads = new AtomicInteger();
+        this.clientExecutor = Executors.newFixedThreadPool(connectionSetting.getFetch().getClientThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "http-client-" + clientThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(timeout)
+                .executor(clientExecutor)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clientExecutor.shutdownNow();
+    }
+
+    /**
+     * Загружает страницу. Если у page заполнены etag или lastModified, запрос становится условным
+     * и при ответе 304 содержимое страницы остаётся пустым.
+     * Возвращает false, если ответ отброшен ResponseGate: не HTML или тело больше maxBodySizeKb.
+     */
+    public boolean fetch(Page page, String url) throws IOException {
+        HttpResponse<String> response = await(buildRequest(url, page.getEtag(), page.getLastModified()), responseGate);
+        page.setCode(response.statusCode());
+        if (response.statusCode() == 304) {
+            return true;
+        }
+        if (response.body() == null) {
+            log.debug("Ответ {} отброшен: Content-Type {}, Content-Length {}", url,
+                    response.headers().firstValue("Content-Type").orElse("-"),
+                    response.headers().firstValue("Content-Length").orElse("-"));
+            return false;
+        }
+        page.setContent(response.body());
+        page.setEtag(response.headers().firstValue("ETag").orElse(null));
+        page.setLastModified(response.headers().firstValue("Last-Modified").orElse(null));
+        return true;
+    }
+
+    /**
+     * Загружает документ любого типа (например, sitemap.xml) с теми же ограничениями хоста и robots.txt, что и страницы.
+     * Читается не больше maxBytes байт тела; более длинный ответ - ошибка.
+     */
+    public byte[] fetchBytes(String url, int maxBytes) throws IOException {
+        if (!isAllowed(url)) {
+            throw new IOException("Адрес запрещён robots.txt: " + url);
+        }
+        HttpResponse<InputStream> response = await(buildRequest(url, null, null), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            if (response.statusCode() >= 400) {
+                throw new IOException("Ответ " + response.statusCode() + ": " + url);
+            }
+            return readLimited(body, maxBytes, url);
+        }
+    }
+
+    /**
+     * Читает поток целиком, но не больше maxBytes байт.
+     */
+    public static byte[] readLimited(InputStream in, int maxBytes, String url) throws IOException {
+        byte[] bytes = in.readNBytes(maxBytes + 1);
+        if (bytes.length > maxBytes) {
+            throw new IOException("Документ " + url + " больше " + maxBytes / 1024 + " КБ");
+        }
+        return bytes;
+    }
+
+    /**
+     * Проверяет, разрешён ли адрес правилами robots.txt его хоста.
+     */
+    public boolean isAllowed(String url) {
+        try {
+            return hostScheduler.isAllowed(URI.create(url), this::loadRobots);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private <T> HttpResponse<T> await(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        String url = request.uri().toString();
+        int statusCode = 0;
+        try {
+            hostScheduler.acquire(request.uri(), this::loadRobots);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка прервана: " + url);
+        }
+        try {
+            HttpResponse<T> response = send(request, bodyHandler);
+            statusCode = response.statusCode();
+            return response;
+        } finally {
+            hostScheduler.release(request.uri(), statusCode);
+        }
+    }
+
+    /**
+     * Отправляет запрос без разрешения HostScheduler: robots.txt загружается из самого HostScheduler.acquire.
+     * Ожидание ответа - ManagedBlocker, число запросов ограничено maxInFlight.
+     */
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        try {
+            inFlight.acquire();
+            try {
+                ResponseBlocker<T> blocker = new ResponseBlocker<>(httpClient.sendAsync(request, bodyHandler));
+                ForkJoinPool.managedBlock(blocker);
+                return blocker.response.get();
+            } finally {
+                inFlight.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка прервана: " + request.uri());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ioException ? ioException : new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * robots.txt читается через ResponseGate: не больше MAX_ROBOTS_BYTES, с тем же таймаутом, что и страницы.
+     */
+    private RobotsRules loadRobots(URI robotsUri) {
+        try {
+            HttpResponse<String> response = send(buildRequest(robotsUri.toString(), null, null), robotsGate);
+            if (response.statusCode() >= 500) {
+                log.info("robots.txt недоступен ({}), обход {} запрещён", response.statusCode(), robotsUri.getHost());
+                return RobotsRules.DISALLOW_ALL;
+            }
+            if (response.statusCode() >= 400) {
+                return RobotsRules.ALLOW_ALL;
+            }
+            if (response.body() == null) {
+                log.info("robots.txt хоста {} отброшен: Content-Type {}, больше {} КБ или не текст", robotsUri.getHost(),
+                        response.headers().firstValue("Content-Type").orElse("-"), MAX_ROBOTS_BYTES / 1024);
+                return RobotsRules.ALLOW_ALL;
+            }
+            return RobotsRules.parse(response.body(), connectionSetting.getUserAgent());
+        } catch (IOException e) {
+            log.info("Не удалось загрузить {}: {}", robotsUri, e.getMessage());
+            return RobotsRules.ALLOW_ALL;
+        }
+    }
+
+    private HttpRequest buildRequest(String url, String etag, String lastModified) throws IOException {
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(timeout)
+                    .header("User-Agent", connectionSetting.getUserAgent())
+                    .header("Referer", connectionSetting.getReferrer());
+            if (etag != null) {
+                builder.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                builder.header("If-Modified-Since", lastModified);
+            }
+            return builder.GET().build();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Некорректный URL: " + url, e);
+        }
+    }
+
+    private record ResponseBlocker<T>(CompletableFuture<HttpResponse<T>> response) implements ForkJoinPool.ManagedBlocker {
+        @Override
+        public boolean block() {
+            try {
+                response.join();
+            } catch (CompletionException | CancellationException ignored) {
+                // ошибка будет разобрана в await
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return response.isDone();
+        }
+    }
+}
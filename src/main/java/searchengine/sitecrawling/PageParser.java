@@ -0,0 +1,27 @@
+package searchengine.sitecrawling;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import searchengine.dto.indexing.ParsedPage;
+
+import java.util.List;
+
+/**
+ * Единственный разбор HTML страницы: заголовок и текст сохраняются в БД,
+ * ссылки идут в обход. Дальше лемматизация и поиск работают только с текстом.
+ */
+public final class PageParser {
+
+    private PageParser() {
+    }
+
+    public static ParsedPage parse(String html, String baseUrl) {
+        Document document = Jsoup.parse(html, baseUrl);
+        List<String> links = document.select("a[href]").stream()
+                .map(link -> link.attr("abs:href").trim())
+                .filter(href -> !href.isEmpty())
+                .distinct()
+                .toList();
+        return new ParsedPage(document.title(), document.text(), links);
+    }
+}
@@ -0,0 +1,62 @@
+package searchengine.sitecrawling;
+
+import java.util.Arrays;
+
+/**
+ * Проверка фразы и близости слов запроса по позициям из индекса, без повторного чтения текста страницы.
+ * positions[i] - отсортированные позиции i-й леммы запроса на странице, offsets[i] - позиция этой леммы в запросе.
+ */
+public final class PhraseMatcher {
+
+    private PhraseMatcher() {
+    }
+
+    /**
+     * Леммы стоят на странице в том же порядке и на тех же расстояниях, что и в запросе.
+     */
+    public static boolean isPhrase(int[][] positions, int[] offsets) {
+        for (int[] lemmaPositions : positions) {
+            if (lemmaPositions.length == 0) {
+                return false;
+            }
+        }
+        for (int start : positions[0]) {
+            boolean match = true;
+            for (int i = 1; i < positions.length && match; i++) {
+                match = Arrays.binarySearch(positions[i], start - offsets[0] + offsets[i]) >= 0;
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Длина самого короткого фрагмента страницы (в словах), содержащего все леммы; -1, если какой-то леммы нет.
+     */
+    public static int minWindow(int[][] positions) {
+        int[] cursors = new int[positions.length];
+        for (int[] lemmaPositions : positions) {
+            if (lemmaPositions.length == 0) {
+                return -1;
+            }
+        }
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int min = 0;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < positions.length; i++) {
+                int position = positions[i][cursors[i]];
+                if (position < positions[min][cursors[min]]) {
+                    min = i;
+                }
+                max = Math.max(max, position);
+            }
+            best = Math.min(best, max - positions[min][cursors[min]] + 1);
+            if (++cursors[min] == positions[min].length) {
+                return best;
+            }
+        }
+    }
+}
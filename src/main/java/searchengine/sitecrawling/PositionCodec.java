@@ -0,0 +1,58 @@
+package searchengine.sitecrawling;
+
+import java.util.Arrays;
+
+/**
+ * Компактная запись позиций слова на странице: разности между соседними позициями в формате varint
+ * (7 бит на байт, старший бит - признак продолжения). Позиции передаются по возрастанию.
+ */
+public final class PositionCodec {
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(int[] positions) {
+        byte[] buffer = new byte[positions.length * 2];
+        int length = 0;
+        int previous = 0;
+        for (int position : positions) {
+            int delta = position - previous;
+            previous = position;
+            if (length + 5 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length + 5, buffer.length * 2));
+            }
+            while ((delta & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            buffer[length++] = (byte) delta;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Для индексов, сохранённых до появления позиций (null), возвращает пустой массив.
+     */
+    public static int[] decode(byte[] encoded) {
+        if (encoded == null || encoded.length == 0) {
+            return NO_POSITIONS;
+        }
+        int[] positions = new int[encoded.length];
+        int count = 0;
+        int previous = 0;
+        for (int i = 0; i < encoded.length; ) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = encoded[i++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0 && i < encoded.length);
+            previous += delta;
+            positions[count++] = previous;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+}
@@ -0,0 +1,90 @@
+package searchengine.sitecrawling;
+
+import searchengine.dto.indexing.PageRelevance;
+import searchengine.model.Index;
+import searchengine.model.Page;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Релевантность страниц по индексам найденных лемм: сумма rank с поправкой на близость слов запроса.
+ */
+public final class RelevanceRanking {
+    private static final double PHRASE_BOOST = 2.0;
+
+    private RelevanceRanking() {
+    }
+
+    /**
+     * Абсолютная релевантность страницы - сумма rank её индексов, относительная - доля от максимальной.
+     * Если в запросе больше одной леммы, сумма умножается на множитель по позициям из индекса (proximityBoost),
+     * а при exactPhrase остаются только страницы, где леммы идут фразой.
+     * queryOffsets - id леммы -> её позиция в запросе.
+     */
+    public static List<PageRelevance> rank(List<Index> indexList, Map<Integer, Integer> queryOffsets, boolean exactPhrase) {
+        List<PageRelevance> resultRelevance = new ArrayList<>();
+        Map<Page, Double> pageToRelevance = new HashMap<>();
+        Map<Page, Map<Integer, byte[]>> pagePositions = new HashMap<>();
+        boolean positional = queryOffsets.size() > 1;
+
+        for (Index index : indexList) {
+            Page page = index.getPage();
+            double rank = index.getRank();
+            pageToRelevance.put(page, pageToRelevance.getOrDefault(page, 0.0) + rank);
+            if (positional && queryOffsets.containsKey(index.getLemma().getId())) {
+                pagePositions.computeIfAbsent(page, p -> new HashMap<>()).put(index.getLemma().getId(), index.getPositions());
+            }
+        }
+
+        if (positional) {
+            int[] offsets = queryOffsets.values().stream().mapToInt(Integer::intValue).toArray();
+            Iterator<Map.Entry<Page, Double>> iterator = pageToRelevance.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Page, Double> entry = iterator.next();
+                Map<Integer, byte[]> encoded = pagePositions.getOrDefault(entry.getKey(), Map.of());
+                int[][] positions = queryOffsets.keySet().stream()
+                        .map(lemmaId -> PositionCodec.decode(encoded.get(lemmaId)))
+                        .toArray(int[][]::new);
+                double boost = proximityBoost(positions, offsets);
+                if (exactPhrase && boost < PHRASE_BOOST) {
+                    iterator.remove();
+                } else {
+                    entry.setValue(entry.getValue() * boost);
+                }
+            }
+        }
+
+        double maxAbsoluteRelevance = pageToRelevance.values().stream()
+                .mapToDouble(Double::doubleValue) 
+                .max()
+                .orElse(0.1);
+
+        for (Map.Entry<Page, Double> entry : pageToRelevance.entrySet()) {
+            Page page = entry.getKey();
+            double absoluteRelevance = entry.getValue();
+            double relativeRelevance = absoluteRelevance / maxAbsoluteRelevance;
+            resultRelevance.add(new PageRelevance(page, absoluteRelevance, relativeRelevance));
+        }
+
+        return resultRelevance;
+    }
+
+    /**
+     * PHRASE_BOOST, если леммы стоят на странице фразой как в запросе; иначе от 1 до PHRASE_BOOST
+     * в зависимости от длины наименьшего фрагмента, где встречаются все леммы; 1, если позиций нет.
+     */
+    public static double proximityBoost(int[][] positions, int[] offsets) {
+        if (PhraseMatcher.isPhrase(positions, offsets)) {
+            return PHRASE_BOOST;
+        }
+        int window = PhraseMatcher.minWindow(positions);
+        if (window < 0) {
+            return 1;
+        }
+        return 1 + (PHRASE_BOOST - 1) / 2 * positions.length / window;
+    }
+}
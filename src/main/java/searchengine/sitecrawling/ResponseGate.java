@@ -0,0 +1,128 @@
+package searchengine.sitecrawling;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Фильтр ответов до загрузки тела. По заголовкам Content-Type и Content-Length отбрасывает
+ * не-HTML и слишком большие ответы, а если длина заранее неизвестна - прерывает передачу,
+ * как только тело превысило maxBodyBytes. У отброшенного ответа тело равно null,
+ * подписка отменяется и соединение закрывается без дочитывания.
+ */
+class ResponseGate implements HttpResponse.BodyHandler<String> {
+    private static final Pattern CHARSET = Pattern.compile("charset=\"?([^\";\\s]+)", Pattern.CASE_INSENSITIVE);
+
+    private final long maxBodyBytes;
+    private final List<String> allowedContentTypes;
+
+    ResponseGate(long maxBodyBytes, List<String> allowedContentTypes) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.allowedContentTypes = allowedContentTypes.stream().map(type -> type.toLowerCase(Locale.ROOT)).toList();
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<String> apply(HttpResponse.ResponseInfo responseInfo) {
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse("");
+        long contentLength = responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1);
+        boolean rejected = responseInfo.statusCode() < 300 && !isAllowedType(contentType)
+                || contentLength > maxBodyBytes;
+        return new BoundedSubscriber(charset(contentType), rejected ? -1 : maxBodyBytes);
+    }
+
+    /**
+     * Ответ без Content-Type пропускается: многие серверы его не присылают, размер всё равно ограничен.
+     */
+    private boolean isAllowedType(String contentType) {
+        if (contentType.isBlank()) {
+            return true;
+        }
+        String mimeType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return allowedContentTypes.contains(mimeType);
+    }
+
+    private static Charset charset(String contentType) {
+        Matcher matcher = CHARSET.matcher(contentType);
+        if (matcher.find()) {
+            try {
+                return Charset.forName(matcher.group(1));
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException ignored) {
+                // неизвестная кодировка - читаем как UTF-8
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Копит тело в памяти, пока оно не больше limit. При limit < 0 отменяет подписку сразу.
+     */
+    private static class BoundedSubscriber implements HttpResponse.BodySubscriber<String> {
+        private final CompletableFuture<String> body = new CompletableFuture<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final Charset charset;
+        private final long limit;
+        private Flow.Subscription subscription;
+
+        BoundedSubscriber(Charset charset, long limit) {
+            this.charset = charset;
+            this.limit = limit;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (limit < 0) {
+                reject();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (body.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                if (buffer.size() + (long) item.remaining() > limit) {
+                    reject();
+                    return;
+                }
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                buffer.write(bytes, 0, bytes.length);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(buffer.toString(charset));
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return body;
+        }
+
+        private void reject() {
+            body.complete(null);
+            subscription.cancel();
+        }
+    }
+}
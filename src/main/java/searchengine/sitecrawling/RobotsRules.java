@@ -0,0 +1,142 @@
+package searchengine.sitecrawling;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt для нашего userAgent: Allow/Disallow и Crawl-delay.
+ * Побеждает самое длинное совпавшее правило, при равной длине - Allow.
+ */
+public final class RobotsRules {
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), 0);
+    public static final RobotsRules DISALLOW_ALL = new RobotsRules(List.of(new Rule("/", false)), 0);
+
+    private final List<Rule> rules;
+    private final double crawlDelaySeconds;
+
+    private RobotsRules(List<Rule> rules, double crawlDelaySeconds) {
+        this.rules = rules;
+        this.crawlDelaySeconds = crawlDelaySeconds;
+    }
+
+    public boolean isAllowed(String path) {
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null
+                    || rule.length() > best.length()
+                    || (rule.length() == best.length() && rule.allow()))) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow();
+    }
+
+    public double getCrawlDelaySeconds() {
+        return crawlDelaySeconds;
+    }
+
+    public static RobotsRules parse(String content, String userAgent) {
+        Map<String, Group> groups = new LinkedHashMap<>();
+        List<Group> current = new ArrayList<>();
+        boolean readingAgents = false;
+
+        for (String rawLine : content.split("\\R")) {
+            String line = rawLine.replaceAll("#.*", "").trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (key.equals("user-agent")) {
+                if (!readingAgents) {
+                    current = new ArrayList<>();
+                }
+                current.add(groups.computeIfAbsent(value.toLowerCase(Locale.ROOT), name -> new Group()));
+                readingAgents = true;
+                continue;
+            }
+            readingAgents = false;
+            switch (key) {
+                case "allow" -> current.forEach(group -> group.add(value, true));
+                case "disallow" -> current.forEach(group -> group.add(value, false));
+                case "crawl-delay" -> current.forEach(group -> group.crawlDelay = parseDelay(value));
+                default -> { }
+            }
+        }
+
+        String token = productToken(userAgent);
+        Group group = groups.entrySet().stream()
+                .filter(entry -> !entry.getKey().equals("*") && !token.isEmpty() && !productToken(entry.getKey()).isEmpty())
+                .filter(entry -> token.startsWith(productToken(entry.getKey())))
+                .max(Comparator.comparingInt(entry -> productToken(entry.getKey()).length()))
+                .map(Map.Entry::getValue)
+                .orElse(groups.get("*"));
+        return group == null ? ALLOW_ALL : new RobotsRules(List.copyOf(group.rules), group.crawlDelay);
+    }
+
+    /**
+     * Имя продукта из User-Agent в нижнем регистре: "HeliontAgent/1.0 (+url)" -> "heliontagent".
+     * Группа robots.txt подходит, если её имя - начало нашего; из нескольких подходящих выбирается самое длинное.
+     */
+    static String productToken(String userAgent) {
+        if (userAgent == null) {
+            return "";
+        }
+        String agent = userAgent.trim().toLowerCase(Locale.ROOT);
+        int end = 0;
+        while (end < agent.length() && agent.charAt(end) != '/' && !Character.isWhitespace(agent.charAt(end))) {
+            end++;
+        }
+        return agent.substring(0, end);
+    }
+
+    private static double parseDelay(String value) {
+        try {
+            return Math.max(0, Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static class Group {
+        private final List<Rule> rules = new ArrayList<>();
+        private double crawlDelay;
+
+        void add(String pattern, boolean allow) {
+            if (!pattern.isEmpty()) {
+                rules.add(new Rule(pattern, allow));
+            }
+        }
+    }
+
+    private record Rule(String pattern, boolean allow, Pattern regex) {
+        Rule(String pattern, boolean allow) {
+            this(pattern, allow, compile(pattern));
+        }
+
+        boolean matches(String path) {
+            return regex == null ? path.startsWith(pattern) : regex.matcher(path).lookingAt();
+        }
+
+        int length() {
+            return pattern.length();
+        }
+
+        private static Pattern compile(String pattern) {
+            if (!pattern.contains("*") && !pattern.endsWith("$")) {
+                return null;
+            }
+            boolean anchored = pattern.endsWith("$");
+            String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            StringBuilder regex = new StringBuilder();
+            for (String part : body.split("\\*", -1)) {
+                if (!regex.isEmpty()) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+            return Pattern.compile(anchored ? regex + "$" : regex.toString());
+        }
+    }
+}
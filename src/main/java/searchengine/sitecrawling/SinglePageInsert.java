@@ -5,52 +5,104 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.indexing.PageUpdate;
 import searchengine.model.Index;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
-import searchengine.repositories.PageRepository;
-import searchengine.repositories.SiteRepository;
 import searchengine.services.IndexingSiteService;
 
-import java.util.List;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
-@Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.SERIALIZABLE)
+@Transactional
 public class SinglePageInsert {
 
     private static final Logger logger = LoggerFactory.getLogger(IndexingSiteService.class);
-    private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final IndexRepository indexRepository;
+    private static final int LOOKUP_CHUNK = 500;
     private final LemmaRepository lemmaRepository;
+    private final PageBatchInsert pageBatchInsert;
+    private final BulkWriter bulkWriter;
 
+    /**
+     * Сохраняет страницу и её индексы. Прежняя версия страницы удаляется в той же транзакции
+     * с уменьшением частот её лемм, частоты лемм новой версии увеличиваются запросом
+     * INSERT ... ON DUPLICATE KEY UPDATE по уникальному ключу (site_id, lemma),
+     * поэтому работа пропорциональна числу лемм страницы, а не размеру таблицы lemma.
+     * Уровень изоляции обычный: удаление по (site_id, path_hash) блокирует в индексе только этот путь,
+     * поэтому одновременная переиндексация одной страницы выполняется по очереди, а разных страниц - параллельно.
+     * Сайт должен быть уже сохранён: строка site в транзакции не блокируется.
+     * При ошибке транзакция откатывается целиком, и прежняя версия страницы остаётся.
+     */
     public void singlePageInsert(Site site, Page page, Pair<List<Lemma>, List<Index>> lemmaAndIndex) {
+        insertPages(site, List.of(new PageUpdate(page, lemmaAndIndex.getLeft(), lemmaAndIndex.getRight())));
+    }
+
+    /**
+     * Заменяет несколько страниц сайта одной транзакцией: прежние версии удаляются по пути,
+     * новые страницы, их содержимое и индексы вставляются пакетами BulkWriter, а частоты общих лемм
+     * увеличиваются одним запросом на лемму. Страницы идут в порядке пути,
+     * так что пачки, пересекающиеся по страницам, блокируют их в одном порядке.
+     */
+    public void insertPages(Site site, List<PageUpdate> updates) {
         try {
-            logger.info("Сохранение сайта: {}", site.getName());
-            siteRepository.save(site);
+            List<PageUpdate> ordered = updates.stream()
+                    .sorted(Comparator.comparing(update -> update.page().getPath()))
+                    .toList();
+            int replaced = 0;
+            for (PageUpdate update : ordered) {
+                replaced += pageBatchInsert.deletePageByPath(site, update.page().getPath());
+            }
+            logger.info("Удалено прежних версий страниц: {}", replaced);
 
-            logger.info("Сохранение страницы: {}", page.getPath());
-            pageRepository.save(page);
+            logger.info("Сохранение страниц: {}", ordered.size());
+            bulkWriter.insertPages(site, ordered.stream().map(PageUpdate::page).toList());
 
             logger.info("Сохранение лемм: {}", site.getName());
-            lemmaRepository.saveAll(lemmaAndIndex.getLeft());
+            upsertLemmas(site, ordered.stream().flatMap(update -> update.lemmas().stream()).toList());
 
-            logger.info("Сохранение индексов: {}", page.getPath());
-            indexRepository.saveAll(lemmaAndIndex.getRight());
+            logger.info("Сохранение индексов: {}", site.getName());
+            bulkWriter.insertIndexes(ordered.stream().flatMap(update -> update.indexes().stream()).toList());
 
-            logger.info("Сохранение страницы и её метаданных завершилось.");
-        } catch (Exception e) {
-            logger.error("Ошибка при сохранении страницы: {}", e.getMessage());
+            logger.info("Сохранение страниц и их метаданных завершилось.");
+        } catch (RuntimeException e) {
+            logger.error("Ошибка при сохранении страниц сайта {}: {}", site.getName(), e.getMessage());
+            throw e;
         }
     }
-}
 
+    /**
+     * Увеличивает частоту каждой леммы на число страниц, где она встретилась (новые леммы создаются),
+     * и проставляет леммам id из БД. Id новых лемм резервирует BulkWriter в id_range, как и при обходе сайта.
+     * Леммы обновляются в порядке уникального ключа, чтобы параллельные транзакции блокировали общие леммы
+     * в одном порядке и не попадали во взаимную блокировку.
+     */
+    private void upsertLemmas(Site site, List<Lemma> pageLemmas) {
+        Map<String, List<Lemma>> byText = new TreeMap<>();
+        pageLemmas.forEach(lemma -> byText.computeIfAbsent(lemma.getLemma(), text -> new ArrayList<>()).add(lemma));
+        Map<String, Lemma> rows = new LinkedHashMap<>();
+        byText.forEach((text, lemmas) -> {
+            Lemma row = new Lemma();
+            row.setSite(site);
+            row.setLemma(text);
+            row.setFrequency(lemmas.size());
+            rows.put(text, row);
+        });
 
-   
\ No newline at end of file
+        List<String> texts = List.copyOf(rows.keySet());
+        for (int from = 0; from < texts.size(); from += LOOKUP_CHUNK) {
+            List<String> chunk = texts.subList(from, Math.min(texts.size(), from + LOOKUP_CHUNK));
+            for (Lemma stored : lemmaRepository.findBySiteAndLemmaIn(site, chunk)) {
+                Lemma row = rows.get(stored.getLemma());
+                if (row != null) {
+                    row.setId(stored.getId());
+                }
+            }
+        }
+        bulkWriter.upsertLemmas(new ArrayList<>(rows.values()));
+        rows.forEach((text, row) -> byText.get(text).forEach(lemma -> lemma.setId(row.getId())));
+    }
+}
@@ -1,109 +1,192 @@
 package searchengine.sitecrawling;
 
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-import searchengine.config.AppConfigProperties;
+import searchengine.dto.indexing.KnownPage;
+import searchengine.dto.indexing.ParsedPage;
 import searchengine.model.Page;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
 import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
     @Slf4j
     public class SiteCrawler extends RecursiveTask<List<Page>> {
+        private final CrawlSession session;
         private final String headUrl;
         private final String another_url;
-        private final Set<String> visitedUrls;
-        private final AppConfigProperties connectionSetting;
+        private final int depth;
+        private static final ParsedPage EMPTY_PAGE = new ParsedPage("", "", List.of());
         private static final Pattern FILE_PATTERN = Pattern
                 .compile(".*\\.(jpg|jpeg|png|gif|bmp|pdf|doc|docx|xls|xlsx|ppt|pptx|zip|rar|tar|gz|7z|mp3|wav|mp4|mkv|avi|mov|sql)$", Pattern.CASE_INSENSITIVE);
-        private final AtomicBoolean indexingInProgress;
 
-        public SiteCrawler(String headUrl, AppConfigProperties connectionSetting, AtomicBoolean indexingInProgress) {
-            this(headUrl, headUrl, ConcurrentHashMap.newKeySet(), connectionSetting, indexingInProgress);
+        public SiteCrawler(CrawlSession session, String url) {
+            this(session, url, 0);
         }
-        public SiteCrawler(String headUrl, String url, Set<String> visitedUrls, AppConfigProperties connectionSetting, AtomicBoolean indexingInProgress) {
-            this.headUrl = headUrl;
+
+        /**
+         * Задача для очереди CrawlFrontier: адрес уже отмечен посещённым при постановке в очередь.
+         */
+        public SiteCrawler(CrawlSession session, String url, int depth) {
+            this.session = session;
+            this.headUrl = session.getHeadUrl();
             this.another_url = url;
-            this.visitedUrls = visitedUrls;
-            this.connectionSetting = connectionSetting;
-            this.indexingInProgress = indexingInProgress;
+            this.depth = depth;
         }
 
-        public SiteCrawler(String HeadUrl, String another_url, AppConfigProperties connectionSetting, AtomicBoolean indexingInProgress) {
-            this.headUrl = HeadUrl;
-            this.another_url = another_url;
-            this.connectionSetting = connectionSetting;
-            this.visitedUrls = ConcurrentHashMap.newKeySet();
-            this.indexingInProgress = indexingInProgress;
+        public SiteCrawler(String HeadUrl, String another_url, PageFetcher pageFetcher, AtomicBoolean indexingInProgress) {
+            this(new CrawlSession(HeadUrl, pageFetcher, indexingInProgress), another_url);
         }
 
         @Override
         public List<Page> compute() {
-            Page currentPage = new Page();
-            currentPage.setPath((another_url.substring(headUrl.length())));
+            try {
+                return crawlPage();
+            } finally {
+                if (session.getCrawlFrontier() != null) {
+                    session.getCrawlFrontier().finished();
+                }
+            }
+        }
+
+        private List<Page> crawlPage() {
             List<Page> pages = new ArrayList<>();
 
-            if (visitedUrls.contains(another_url)) {
+            if (!session.isActive()) {
                 return pages;
             }
-            if (!indexingInProgress.get()) {
+            if (session.getCrawlFrontier() == null && !session.getVisitedUrls().addIfAbsent(another_url)) {
                 return pages;
             }
-            visitedUrls.add(another_url);
 
+            Page currentPage = new Page(another_url.substring(headUrl.length()));
+            KnownPage knownPage = session.getKnownPages().remove(currentPage.getPath());
+            if (knownPage != null) {
+                currentPage.setId(knownPage.id());
+                currentPage.setEtag(knownPage.etag());
+                currentPage.setLastModified(knownPage.lastModified());
+            }
             List<SiteCrawler> crawler = new ArrayList<>();
 
             try {
-                fetchAndParsePage(currentPage, another_url);
-                pages.add(currentPage);
-
-                processLinks(currentPage.getContent(), visitedUrls, crawler);
+                ParsedPage parsedPage = fetchAndParsePage(currentPage, another_url);
+                if (parsedPage == null) {
+                    dropPage(currentPage, knownPage);
+                    return pages;
+                }
+                boolean unchanged = knownPage != null && (currentPage.getCode() == 304
+                        || Objects.equals(knownPage.contentHash(), currentPage.getContentHash()));
+                if (currentPage.getCode() == 304) {
+                    parsedPage = parseStoredContent(knownPage);
+                }
+                if (currentPage.getCode() < 400) {
+                    processLinks(parsedPage.links(), crawler);
+                }
+                if (unchanged) {
+                    markDone();
+                } else {
+                    emitPage(currentPage, pages);
+                }
 
                 collectResults(crawler, pages);
 
             } catch (IOException e) {
-                currentPage.setCode(500);
-                currentPage.setContent(e.getMessage().isEmpty() ? "Индексация остановлена пользователем" : e.getMessage());
-                pages.add(currentPage);
-                if (!indexingInProgress.get()) {
+                if (!session.isActive()) {
                     return pages;
                 }
+                currentPage.setCode(500);
+                String message = Objects.requireNonNullElse(e.getMessage(), e.toString());
+                currentPage.setContent(message.isEmpty() ? "Индексация остановлена пользователем" : message);
+                emitPage(currentPage, pages);
             }
             return pages;
         }
 
-        private void fetchAndParsePage(Page page, String anotherUrl) throws IOException {
-            Connection.Response response = Jsoup.connect(anotherUrl)
-                    .userAgent(connectionSetting.getUserAgent())
-                    .referrer(connectionSetting.getReferrer())
-                    .timeout(5000)
-                    .ignoreContentType(true)
-                    .execute();
+        private void emitPage(Page page, List<Page> pages) {
+            if (session.getPageConsumer() != null) {
+                session.getPageConsumer().accept(page);
+            } else {
+                pages.add(page);
+            }
+        }
+
+        /**
+         * Ответ отброшен PageFetcher (не HTML или слишком большой) - страницу не сохраняем.
+         * Прежняя версия страницы возвращается в knownPages и будет удалена по завершении повторного обхода.
+         */
+        private void dropPage(Page page, KnownPage knownPage) {
+            if (knownPage != null) {
+                session.getKnownPages().put(page.getPath(), knownPage);
+            }
+            markDone();
+        }
+
+        /**
+         * Страница не изменилась с прошлой индексации или отброшена: в БД ничего не пишем, только отмечаем её в журнале обхода.
+         */
+        private void markDone() {
+            if (session.getFrontier() != null) {
+                session.getFrontier().done(another_url);
+            }
+        }
+
+        /**
+         * Загружает и один раз разбирает страницу: заголовок и текст сохраняются в page, ссылки возвращаются для обхода.
+         * Возвращает null, если ответ отброшен, и пустой ParsedPage, если сервер ответил 304.
+         */
+        private ParsedPage fetchAndParsePage(Page page, String anotherUrl) throws IOException {
+            if (!session.getPageFetcher().fetch(page, anotherUrl)) {
+                return null;
+            }
+            if (page.getContent() == null) {
+                return EMPTY_PAGE;
+            }
+            page.setContentHash(contentHash(page.getContent()));
+            ParsedPage parsedPage = PageParser.parse(page.getContent(), anotherUrl);
+            page.setTitle(parsedPage.title());
+            page.setText(parsedPage.text());
+            return parsedPage;
+        }
 
-            page.setCode(response.statusCode());
-            page.setContent(response.body());
+        /**
+         * Для 304 ссылки берутся из сохранённой версии страницы, чтобы обход прошёл дальше.
+         */
+        private ParsedPage parseStoredContent(KnownPage knownPage) {
+            String content = session.getStoredContent().apply(knownPage.id());
+            return content == null ? EMPTY_PAGE : PageParser.parse(content, another_url);
         }
 
-        private void processLinks(String сontent, Set<String> visitedUrls, List<SiteCrawler> crawlers) {
-            Document document = Jsoup.parse(сontent, another_url);
-            Elements links = document.select("a");
-            for (Element link : links) {
-                if (!indexingInProgress.get()) {
+        private static String contentHash(String content) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+                return HexFormat.of().formatHex(digest);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void processLinks(List<String> links, List<SiteCrawler> crawlers) {
+            for (String href : links) {
+                if (!session.isActive()) {
                     break;
                 }
-                String href = link.attr("abs:href").trim();
-                if(isValidLink(href)) {
+                if (!isValidLink(href)) {
+                    continue;
+                }
+                if (session.getCrawlFrontier() != null) {
+                    enqueue(href);
+                } else {
                     try {
-                        SiteCrawler crawlerInstance = new SiteCrawler(headUrl, href, visitedUrls, connectionSetting,indexingInProgress);
+                        SiteCrawler crawlerInstance = new SiteCrawler(session, href, depth + 1);
+                        if (session.getFrontier() != null) {
+                            session.getFrontier().enqueued(href, depth + 1);
+                        }
                         crawlerInstance.fork();
                         crawlers.add(crawlerInstance);
                     }
@@ -114,16 +197,27 @@ import java.util.regex.Pattern;
             }
         }
 
+        private void enqueue(String href) {
+            CrawlFrontier crawlFrontier = session.getCrawlFrontier();
+            if (crawlFrontier.allowsDepth(depth + 1) && session.getVisitedUrls().addIfAbsent(href)) {
+                crawlFrontier.offer(href, depth + 1);
+                if (session.getFrontier() != null) {
+                    session.getFrontier().enqueued(href, depth + 1);
+                }
+            }
+        }
+
         public boolean isValidLink(String urls) {
             return urls.startsWith(headUrl)
                     && !urls.contains("#")
-                    && !visitedUrls.contains(urls)
-                    && !FILE_PATTERN.matcher(urls).matches();
+                    && !session.getVisitedUrls().contains(urls)
+                    && !FILE_PATTERN.matcher(urls).matches()
+                    && session.getPageFetcher().isAllowed(urls);
         }
 
         private List<Page> collectResults(List<SiteCrawler> crawlers, List<Page> pages) {
             for(SiteCrawler crawler : crawlers) {
-                if (!indexingInProgress.get()) {
+                if (!session.isActive()) {
                     break;
                 }
                 pages.addAll(crawler.join());
@@ -131,18 +225,19 @@ import java.util.regex.Pattern;
             return pages;
         }
 
-        public Page computePage() {
+        /**
+         * Возвращает null, если ответ отброшен как не-HTML или слишком большой.
+         * Ошибка загрузки не превращается в страницу с кодом 500, а пробрасывается: вызывающий не должен
+         * заменять ею сохранённую версию страницы.
+         */
+        public Page computePage() throws IOException {
             Page currentPage = new Page(another_url.substring(headUrl.length()));
-            try {
-                fetchAndParsePage(currentPage, another_url);
-            } catch (IOException e) {
-                log.info("Недействительный URL: {}", another_url);
-                currentPage.setCode(500);
-                currentPage.setContent(e.getMessage());
-                return currentPage;
-                }
-            return currentPage;
+            if (fetchAndParsePage(currentPage, another_url) == null) {
+                log.info("Страница {} не является HTML-документом или превышает допустимый размер", another_url);
+                return null;
             }
+            return currentPage;
+        }
 
     }
 
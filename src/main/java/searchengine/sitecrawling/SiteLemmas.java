@@ -0,0 +1,23 @@
+package searchengine.sitecrawling;
+
+import searchengine.model.Lemma;
+
+import java.util.Arrays;
+
+/**
+ * Сохранённые в БД леммы сайта по id из LemmaDictionary. Используется только потоком записи.
+ */
+public class SiteLemmas {
+    private Lemma[] lemmas = new Lemma[1024];
+
+    public Lemma get(int id) {
+        return id < lemmas.length ? lemmas[id] : null;
+    }
+
+    public void put(int id, Lemma lemma) {
+        if (id >= lemmas.length) {
+            lemmas = Arrays.copyOf(lemmas, Math.max(id + 1, lemmas.length * 2));
+        }
+        lemmas[id] = lemma;
+    }
+}
@@ -0,0 +1,57 @@
+package searchengine.sitecrawling;
+
+import org.apache.commons.lang3.tuple.Pair;
+import searchengine.dto.indexing.LemmatizedPage;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Леммы и индексы сайта, обойдённого без конвейера: все страницы лемматизируются разом перед сохранением.
+ */
+public final class SiteLemmatizer {
+
+    private SiteLemmatizer() {
+    }
+
+    /**
+     * Леммы всех страниц собираются в общий LemmaDictionary: на каждую лемму создаётся одна сущность Lemma,
+     * её частота - число страниц, на которых она встретилась.
+     */
+    public static Pair<List<Lemma>, List<Index>> lemmatize(LemmaExtraction lemmaExtraction, Site site, List<Page> pages) {
+        LemmaDictionary dictionary = new LemmaDictionary();
+        List<LemmatizedPage> lemmatizedPages = pages.parallelStream()
+                .map(page -> dictionary.addPage(page, page.getText() == null
+                        ? Map.of()
+                        : lemmaExtraction.analyzeText(page.getText())))
+                .toList();
+
+        List<Lemma> lemmas = new ArrayList<>(dictionary.size());
+        for (int id = 0; id < dictionary.size(); id++) {
+            Lemma lemma = new Lemma();
+            lemma.setSite(site);
+            lemma.setLemma(dictionary.lemma(id));
+            lemma.setFrequency((int) dictionary.documentFrequency(id));
+            lemmas.add(lemma);
+        }
+
+        List<Index> indexes = new ArrayList<>();
+        for (LemmatizedPage lemmatizedPage : lemmatizedPages) {
+            int[] lemmaIds = lemmatizedPage.lemmaIds();
+            for (int i = 0; i < lemmaIds.length; i++) {
+                Index index = new Index();
+                index.setPage(lemmatizedPage.page());
+                index.setLemma(lemmas.get(lemmaIds[i]));
+                index.setRank(lemmatizedPage.ranks()[i]);
+                index.setPositions(lemmatizedPage.positions()[i]);
+                indexes.add(index);
+            }
+        }
+        return Pair.of(lemmas, indexes);
+    }
+}
@@ -0,0 +1,111 @@
+package searchengine.sitecrawling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.springframework.stereotype.Component;
+import searchengine.config.AppConfigProperties;
+import searchengine.config.Sites;
+import searchengine.config.SitesList;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Читает адреса страниц из sitemap.xml (в том числе сжатого .gz). Вложенные sitemap из sitemapindex
+ * читаются на глубину до MAX_DEPTH; чтение останавливается, как только набрано limit адресов.
+ * Загружаются только sitemap хостов из конфигурации - через PageFetcher, с учётом robots.txt и частоты запросов к хосту.
+ * Размер sitemap после распаковки ограничен maxSitemapSizeMb.
+ */
+@Slf4j
+@Component
+public class SitemapReader {
+    private static final int MAX_DEPTH = 2;
+    private final PageFetcher pageFetcher;
+    private final Set<String> hosts;
+    private final int maxBytes;
+
+    public SitemapReader(PageFetcher pageFetcher, SitesList sitesList, AppConfigProperties connectionSetting) {
+        this.pageFetcher = pageFetcher;
+        this.hosts = sitesList.getSites().stream()
+                .map(Sites::getUrl)
+                .map(SitemapReader::hostOf)
+                .filter(host -> !host.isEmpty())
+                .collect(Collectors.toSet());
+        this.maxBytes = Math.toIntExact(Math.min(Integer.MAX_VALUE - 1L,
+                Math.max(1, connectionSetting.getPageQueue().getMaxSitemapSizeMb()) * 1024L * 1024L));
+    }
+
+    public Set<String> read(String sitemapUrl, int limit) throws IOException {
+        Set<String> urls = new LinkedHashSet<>();
+        read(sitemapUrl, limit, 0, urls);
+        log.info("Из {} прочитано адресов: {}", sitemapUrl, urls.size());
+        return urls;
+    }
+
+    /**
+     * Хост адреса в нижнем регистре или пустая строка, если адрес не http(s).
+     */
+    public static String hostOf(String url) {
+        try {
+            URI uri = URI.create(url);
+            String scheme = uri.getScheme();
+            if (uri.getHost() == null || !"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+                return "";
+            }
+            return uri.getHost().toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private void read(String sitemapUrl, int limit, int depth, Set<String> urls) throws IOException {
+        Document document = load(sitemapUrl);
+        for (Element sitemap : document.select("sitemapindex > sitemap > loc")) {
+            if (urls.size() >= limit) {
+                return;
+            }
+            String nested = sitemap.text().trim();
+            if (depth >= MAX_DEPTH) {
+                continue;
+            }
+            if (!hosts.contains(hostOf(nested))) {
+                log.info("Вложенный sitemap {} не относится к сайтам из конфигурации и пропущен", nested);
+                continue;
+            }
+            read(nested, limit, depth + 1, urls);
+        }
+        for (Element loc : document.select("urlset > url > loc")) {
+            if (urls.size() >= limit) {
+                return;
+            }
+            urls.add(loc.text().trim());
+        }
+    }
+
+    private Document load(String sitemapUrl) throws IOException {
+        if (!hosts.contains(hostOf(sitemapUrl))) {
+            throw new IOException("Sitemap " + sitemapUrl + " не относится к сайтам из конфигурации");
+        }
+        byte[] body = pageFetcher.fetchBytes(sitemapUrl, maxBytes);
+        if (isGzip(body)) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = PageFetcher.readLimited(in, maxBytes, sitemapUrl);
+            }
+        }
+        return Jsoup.parse(new ByteArrayInputStream(body), null, sitemapUrl, Parser.xmlParser());
+    }
+
+    private static boolean isGzip(byte[] body) {
+        return body.length > 1 && (body[0] & 0xff) == 0x1f && (body[1] & 0xff) == 0x8b;
+    }
+}
@@ -1,19 +1,20 @@
 package searchengine.sitecrawling;
 
-import org.jsoup.Jsoup;
-
 import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public final class SnippetGenerator {
     private static final int CONTEXT_RADIUS = 200;
 
-    public static String generatedSnippet(String query, String content) {
-        String text = Jsoup.parse(content).text();
-        String[] words = query.split("\\s+");
+    /**
+     * text - сохранённый при индексации текст страницы (Page.text), HTML здесь не разбирается.
+     */
+    public static String generatedSnippet(String query, String text) {
+        String[] words = query.replace("\"", " ").strip().split("\\s+");
 
-        int phraseIndex = findPhraseFind(text,query);
+        int phraseIndex = findPhraseFind(text,words);
 
         int index = phraseIndex != -1 ? phraseIndex : findFirstOccurrenceIndex(text, words);
         
@@ -27,17 +28,19 @@ public final class SnippetGenerator {
         return highlightWords(text.substring(start, end), words);
     }
 
-    private static int findPhraseFind(String text,String phrase){
-        text = text.trim().replaceAll("\\s+", " ").toLowerCase();
-        phrase = phrase.trim().replaceAll("\\s+", " ").toLowerCase();
-        Pattern pattern = Pattern.compile(phrase);
-        Matcher matcher = pattern.matcher(text);
+    /**
+     * Слова запроса экранируются: символы вроде ( [ * в запросе не должны разбираться как регулярное выражение.
+     * Поиск идёт по исходному тексту, поэтому найденная позиция совпадает с позицией в text.
+     */
+    private static int findPhraseFind(String text,String[] words){
+        String regex = Arrays.stream(words).map(Pattern::quote).collect(Collectors.joining("\\s+"));
+        Matcher matcher = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE).matcher(text);
         return matcher.find() ? matcher.start() : -1; 
     }
 
     private static int findFirstOccurrenceIndex(String text, String[] words) {
         return Arrays.stream(words).map(word-> {
-                    Pattern pattern = Pattern.compile(word,Pattern.CASE_INSENSITIVE);
+                    Pattern pattern = Pattern.compile(Pattern.quote(word),Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
                     Matcher matcher = pattern.matcher(text);
                     return matcher.find() && word.length() > 3 ? matcher.start() : - 1;
                 }).filter(index -> index != -1)
@@ -76,7 +79,7 @@ public final class SnippetGenerator {
         }
         String regex = "(?<=\\PL|^)(" + String.join("|", words) + ")(?=\\PL|$)";
 
-        Pattern pattern = Pattern.compile(regex,Pattern.CASE_INSENSITIVE);
+        Pattern pattern = Pattern.compile(regex,Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
         Matcher matcher = pattern.matcher(text);
 
         StringBuilder result = new StringBuilder();
@@ -0,0 +1,74 @@
+package searchengine.sitecrawling;
+
+import searchengine.config.AppConfigProperties;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Множество посещённых адресов с бюджетом памяти: растёт по мере обхода, но не больше memoryBudgetMb.
+ * Хранит не строки, а 64-битные отпечатки нормализованных URL.
+ */
+public interface VisitedUrlSet {
+
+    /**
+     * Атомарно добавляет адрес; возвращает false, если он уже был посещён.
+     */
+    boolean addIfAbsent(String url);
+
+    boolean contains(String url);
+
+    /**
+     * true, если бюджет памяти исчерпан и часть новых адресов могла быть пропущена как уже посещённые.
+     */
+    default boolean isTruncated() {
+        return false;
+    }
+
+    static VisitedUrlSet create(AppConfigProperties.Visited settings) {
+        long budgetBytes = (long) settings.getMemoryBudgetMb() * 1024 * 1024;
+        return "bloom".equalsIgnoreCase(settings.getMode())
+                ? new BloomVisitedSet(budgetBytes * 8, settings.getBloomHashes())
+                : new FingerprintVisitedSet(budgetBytes / Long.BYTES);
+    }
+
+    /**
+     * Отпечаток адреса: нормализация, FNV-1a по байтам UTF-8 и перемешивание битов (fmix64 из MurmurHash3).
+     */
+    static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : normalize(url).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Схема и хост в нижнем регистре, без порта по умолчанию, без фрагмента, пустой путь заменяется на "/".
+     */
+    static String normalize(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+                return url.trim();
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            boolean defaultPort = port == -1 || (scheme.equals("http") && port == 80) || (scheme.equals("https") && port == 443);
+            String host = uri.getHost() == null ? uri.getRawAuthority() : uri.getHost().toLowerCase(Locale.ROOT);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            String query = uri.getRawQuery() == null || uri.getRawQuery().isEmpty() ? "" : "?" + uri.getRawQuery();
+            return scheme + "://" + host + (defaultPort ? "" : ":" + port) + path + query;
+        } catch (URISyntaxException e) {
+            return url.trim();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package searchengine.sitecrawling;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Разбивает текст на слова за один проход без регулярных выражений и промежуточных строк.
+ * Словом считается непрерывная последовательность русских или английских букв; регистр приводится к нижнему,
+ * ё заменяется на е. Остальные символы разделяют слова, слова из букв разных алфавитов пропускаются.
+ */
+public final class WordTokenizer {
+    public static final int MIN_WORD_LENGTH = 3;
+
+    private WordTokenizer() {
+    }
+
+    /**
+     * Слова приходят в handler в порядке появления в тексте, с повторами.
+     */
+    public static void tokenize(CharSequence text, Consumer<String> handler) {
+        char[] buffer = new char[32];
+        int length = 0;
+        boolean russian = false;
+        boolean english = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            char letter;
+            if (c >= 'a' && c <= 'z') {
+                letter = c;
+                english = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                letter = (char) (c + ('a' - 'A'));
+                english = true;
+            } else if (c >= 'а' && c <= 'я') {
+                letter = c;
+                russian = true;
+            } else if (c >= 'А' && c <= 'Я') {
+                letter = (char) (c + ('а' - 'А'));
+                russian = true;
+            } else if (c == 'ё' || c == 'Ё') {
+                letter = 'е';
+                russian = true;
+            } else {
+                emit(buffer, length, russian, english, handler);
+                length = 0;
+                russian = false;
+                english = false;
+                continue;
+            }
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, length * 2);
+            }
+            buffer[length++] = letter;
+        }
+        emit(buffer, length, russian, english, handler);
+    }
+
+    /**
+     * Слово из tokenize целиком состоит из букв одного алфавита, поэтому достаточно первой буквы.
+     */
+    public static boolean isEnglish(String word) {
+        return word.charAt(0) <= 'z';
+    }
+
+    private static void emit(char[] buffer, int length, boolean russian, boolean english, Consumer<String> handler) {
+        if (length >= MIN_WORD_LENGTH && russian != english) {
+            handler.accept(new String(buffer, 0, length));
+        }
+    }
+}
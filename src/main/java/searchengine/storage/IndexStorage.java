@@ -0,0 +1,105 @@
+package searchengine.storage;
+
+import searchengine.dto.indexing.KnownPage;
+import searchengine.dto.indexing.LemmatizedPage;
+import searchengine.dto.indexing.PageUpdate;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.sitecrawling.LemmaDictionary;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище страниц, лемм и индексов. Сайты и их поколения всегда лежат в таблице site,
+ * остальное - в движке, выбранном настройкой app.storage.engine: jpa (MySQL) или segment (файлы на диске).
+ */
+public interface IndexStorage {
+
+    /**
+     * Открывает запись страниц сайта для конвейера индексации. existing - у сайта уже есть сохранённые данные,
+     * dictionary - словарь конвейера, на id которого ссылаются LemmatizedPage.
+     */
+    SiteWriter openWriter(Site site, boolean existing, LemmaDictionary dictionary);
+
+    /**
+     * Сохраняет новый сайт целиком: страницы, леммы и индексы, собранные SiteLemmatizer.
+     */
+    void saveSite(Site site, List<Page> pages, List<Lemma> lemmas, List<Index> indexes);
+
+    /**
+     * Заменяет страницу сайта новой версией с её леммами и индексами; сайт сохраняется, если он новый.
+     */
+    void replacePage(Site site, Page page, List<Lemma> lemmas, List<Index> indexes);
+
+    /**
+     * Заменяет несколько страниц сайта одной записью: в jpa - одной транзакцией, в segment - одной фиксацией.
+     */
+    default void replacePages(Site site, List<PageUpdate> updates) {
+        updates.forEach(update -> replacePage(site, update.page(), update.lemmas(), update.indexes()));
+    }
+
+    boolean containsPage(Site site, String path);
+
+    List<KnownPage> findKnownPages(Site site);
+
+    String findHtml(Integer pageId);
+
+    /**
+     * Текст страниц по id; страниц, которых нет, в ответе нет.
+     */
+    Map<Integer, String> findTexts(List<Integer> pageIds);
+
+    /**
+     * Удаляет страницы вместе с их индексами и уменьшает частоты затронутых лемм.
+     */
+    void deletePages(Site site, List<Integer> pageIds);
+
+    /**
+     * Удаляет леммы сайта, которые не встречаются ни на одной странице, и возвращает их число.
+     */
+    int deleteUnusedLemmas(Site site);
+
+    /**
+     * Удаляет все страницы, леммы и индексы поколения сайта. Строку site удаляет вызывающий.
+     */
+    void deleteSite(int siteId);
+
+    /**
+     * Леммы с текстом lemma на сайте site или, если site == null, на текущих поколениях всех сайтов.
+     */
+    List<Lemma> findLemmas(String lemma, Site site);
+
+    /**
+     * Индексы лемм вместе со страницами. У одной страницы во всех её индексах один и тот же объект Page.
+     * Позиции читаются только при withPositions, иначе positions у индексов null.
+     */
+    List<Index> findPostings(List<Lemma> lemmas, boolean withPositions);
+
+    long countServingPages();
+
+    int countPages(Site site);
+
+    int countLemmas(Site site);
+
+    /**
+     * Пишет в лог статистику хранилища.
+     */
+    default void report() {
+    }
+
+    /**
+     * Запись страниц одного сайта. Используется только потоком записи конвейера.
+     */
+    interface SiteWriter {
+        void write(List<LemmatizedPage> batch);
+
+        /**
+         * Дописывает накопленное; вызывается после последнего write.
+         */
+        default void close() {
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package searchengine.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.AppConfigProperties;
+import searchengine.dto.indexing.KnownPage;
+import searchengine.dto.indexing.PageUpdate;
+import searchengine.dto.indexing.Posting;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageContentRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.sitecrawling.BulkWriter;
+import searchengine.sitecrawling.LemmaDictionary;
+import searchengine.sitecrawling.PageBatchInsert;
+import searchengine.sitecrawling.SiteLemmas;
+import searchengine.sitecrawling.SinglePageInsert;
+
+import java.util.*;
+
+/**
+ * Хранение в MySQL: чтение через репозитории Spring Data, запись через BulkWriter и PageBatchInsert.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.storage", name = "engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaIndexStorage implements IndexStorage {
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final PageBatchInsert pageBatchInsert;
+    private final SinglePageInsert singlePageInsert;
+    private final BulkWriter bulkWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+
+    public JpaIndexStorage(SiteRepository siteRepository, PageRepository pageRepository, PageContentRepository pageContentRepository,
+                           LemmaRepository lemmaRepository, IndexRepository indexRepository,
+                           PageBatchInsert pageBatchInsert, SinglePageInsert singlePageInsert,
+                           BulkWriter bulkWriter, JdbcTemplate jdbcTemplate, AppConfigProperties connectionSetting) {
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.pageContentRepository = pageContentRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexRepository = indexRepository;
+        this.pageBatchInsert = pageBatchInsert;
+        this.singlePageInsert = singlePageInsert;
+        this.bulkWriter = bulkWriter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = Math.max(1, connectionSetting.getBulk().getChunkSize());
+    }
+
+    /**
+     * Леммы, уже сохранённые для сайта, заносятся в словарь конвейера, чтобы их частоты увеличивались, а не дублировались.
+     */
+    @Override
+    public SiteWriter openWriter(Site site, boolean existing, LemmaDictionary dictionary) {
+        SiteLemmas siteLemmas = new SiteLemmas();
+        if (existing) {
+            lemmaRepository.findAllBySite(site).forEach(lemma -> siteLemmas.put(dictionary.intern(lemma.getLemma()), lemma));
+        }
+        return batch -> pageBatchInsert.insertBatch(site, batch, dictionary, siteLemmas);
+    }
+
+    @Override
+    public void saveSite(Site site, List<Page> pages, List<Lemma> lemmas, List<Index> indexes) {
+        log.info("Сохранение страниц: {}", site.getName());
+        bulkWriter.insertPages(site, pages);
+
+        log.info("Сохранение лемм: {}", site.getName());
+        bulkWriter.upsertLemmas(lemmas);
+
+        log.info("Сохранение индексов : {}", site.getName());
+        bulkWriter.insertIndexes(indexes);
+    }
+
+    /**
+     * Сайт сохраняется отдельно до транзакции страницы, чтобы она не держала блокировку строки site.
+     */
+    @Override
+    public void replacePage(Site site, Page page, List<Lemma> lemmas, List<Index> indexes) {
+        log.info("Сохранение сайта: {}", site.getName());
+        siteRepository.save(site);
+        singlePageInsert.singlePageInsert(site, page, Pair.of(lemmas, indexes));
+    }
+
+    @Override
+    public void replacePages(Site site, List<PageUpdate> updates) {
+        log.info("Сохранение сайта: {}", site.getName());
+        siteRepository.save(site);
+        singlePageInsert.insertPages(site, updates);
+    }
+
+    @Override
+    public boolean containsPage(Site site, String path) {
+        return pageRepository.existsBySiteAndPath(site, path);
+    }
+
+    @Override
+    public List<KnownPage> findKnownPages(Site site) {
+        return pageRepository.findKnownPages(site);
+    }
+
+    @Override
+    public String findHtml(Integer pageId) {
+        return pageContentRepository.findHtmlByPageId(pageId);
+    }
+
+    @Override
+    public Map<Integer, String> findTexts(List<Integer> pageIds) {
+        Map<Integer, String> texts = new HashMap<>();
+        if (!pageIds.isEmpty()) {
+            pageContentRepository.findTextsByPageIds(pageIds).forEach(pageText -> texts.put(pageText.pageId(), pageText.text()));
+        }
+        return texts;
+    }
+
+    @Override
+    public void deletePages(Site site, List<Integer> pageIds) {
+        if (!pageIds.isEmpty()) {
+            pageBatchInsert.deletePages(pageIds);
+        }
+    }
+
+    @Override
+    public int deleteUnusedLemmas(Site site) {
+        return pageBatchInsert.deleteUnusedLemmas(site);
+    }
+
+    /**
+     * Индексы, страницы с содержимым и леммы удаляются запросами DELETE кусками по app.bulk.chunkSize строк,
+     * каждый кусок фиксируется сразу. Прерывание потока останавливает удаление между кусками.
+     */
+    @Override
+    public void deleteSite(int siteId) {
+        long started = System.currentTimeMillis();
+        long pages = 0;
+        long postings = 0;
+        List<Integer> pageIds;
+        do {
+            pageIds = jdbcTemplate.queryForList("SELECT id FROM page WHERE site_id = ? LIMIT ?", Integer.class, siteId, chunkSize);
+            if (pageIds.isEmpty()) {
+                break;
+            }
+            String placeholders = String.join(",", Collections.nCopies(pageIds.size(), "?"));
+            Object[] args = pageIds.toArray();
+            Object[] limited = Arrays.copyOf(args, args.length + 1);
+            limited[args.length] = chunkSize;
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update("DELETE FROM indexes WHERE page_id IN (" + placeholders + ") LIMIT ?", limited);
+                postings += deleted;
+            } while (deleted == chunkSize && !Thread.currentThread().isInterrupted());
+            jdbcTemplate.update("DELETE FROM page_content WHERE page_id IN (" + placeholders + ")", args);
+            pages += jdbcTemplate.update("DELETE FROM page WHERE id IN (" + placeholders + ")", args);
+        } while (pageIds.size() == chunkSize && !Thread.currentThread().isInterrupted());
+
+        long lemmas = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? LIMIT ?", siteId, chunkSize);
+            lemmas += deleted;
+        } while (deleted == chunkSize && !Thread.currentThread().isInterrupted());
+        log.info("Удалены данные поколения {}: страниц {}, индексов {}, лемм {} за {} мс",
+                siteId, pages, postings, lemmas, System.currentTimeMillis() - started);
+    }
+
+    @Override
+    public List<Lemma> findLemmas(String lemma, Site site) {
+        return site == null ? lemmaRepository.findByLemma(lemma) : lemmaRepository.findByLemmaToSiteId(lemma, site);
+    }
+
+    /**
+     * Сущности Index не загружаются: читаются только нужные столбцы, страницы - ссылками, которые
+     * подгружаются при обращении, то есть только для выдаваемых результатов.
+     */
+    @Override
+    public List<Index> findPostings(List<Lemma> lemmas, boolean withPositions) {
+        Map<Integer, Lemma> lemmasById = new HashMap<>();
+        lemmas.forEach(lemma -> lemmasById.putIfAbsent(lemma.getId(), lemma));
+        if (lemmasById.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> lemmaIds = new ArrayList<>(lemmasById.keySet());
+        List<Posting> rows = withPositions
+                ? indexRepository.findPositionsByLemmaIdIn(lemmaIds)
+                : indexRepository.findRanksByLemmaIdIn(lemmaIds);
+        List<Index> postings = new ArrayList<>(rows.size());
+        Map<Integer, Page> pages = new HashMap<>();
+        for (Posting row : rows) {
+            Index posting = new Index();
+            posting.setPage(pages.computeIfAbsent(row.pageId(), pageRepository::getReferenceById));
+            posting.setLemma(lemmasById.get(row.lemmaId()));
+            posting.setRank(row.rank());
+            posting.setPositions(row.positions());
+            postings.add(posting);
+        }
+        return postings;
+    }
+
+    @Override
+    public long countServingPages() {
+        return pageRepository.countServingPages();
+    }
+
+    @Override
+    public int countPages(Site site) {
+        return pageRepository.countPagesToSite(site.getId());
+    }
+
+    @Override
+    public int countLemmas(Site site) {
+        return lemmaRepository.countLemmaToSite(site.getId());
+    }
+
+    @Override
+    public void report() {
+        bulkWriter.report();
+    }
+}
@@ -0,0 +1,259 @@
+package searchengine.storage;
+
+import searchengine.model.CompressedTextConverter;
+import searchengine.model.Page;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Страницы сайта во встроенном движке - файл только с дозаписью. Запись PUT хранит метаданные страницы,
+ * id её лемм и сжатые HTML и текст, запись DELETE - id удалённой страницы.
+ * В памяти лежат только метаданные и смещения содержимого, HTML и текст читаются из файла по запросу.
+ * Дописанная запись не видна, пока страница не передана в put или remove; всё, что дописано
+ * после зафиксированной длины файла, при открытии отбрасывается.
+ */
+final class PageStore implements Closeable {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    record StoredPage(int id, String path, Integer code, String title, Integer contentLength,
+                      String etag, String lastModified, String contentHash, int[] lemmaIds,
+                      long htmlOffset, int htmlLength, long textOffset, int textLength) {
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<Integer, StoredPage> pages = new ConcurrentHashMap<>();
+    private final Map<String, Integer> byPath = new ConcurrentHashMap<>();
+    private long length;
+
+    private PageStore(Path file, FileChannel channel, long length) {
+        this.file = file;
+        this.channel = channel;
+        this.length = length;
+    }
+
+    static PageStore open(Path file, long committedLength) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < committedLength) {
+                throw new IOException("Файл страниц " + file + " короче зафиксированной длины " + committedLength);
+            }
+            channel.truncate(committedLength);
+            PageStore store = new PageStore(file, channel, committedLength);
+            store.replay();
+            return store;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    StoredPage get(int id) {
+        return pages.get(id);
+    }
+
+    Integer idByPath(String path) {
+        return byPath.get(path);
+    }
+
+    Collection<StoredPage> pages() {
+        return pages.values();
+    }
+
+    int size() {
+        return pages.size();
+    }
+
+    long length() {
+        return length;
+    }
+
+    StoredPage append(int id, Page page, int[] lemmaIds) throws IOException {
+        byte[] html = CompressedTextConverter.compress(page.getContent());
+        byte[] text = CompressedTextConverter.compress(page.getText());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + (html == null ? 0 : html.length) + (text == null ? 0 : text.length));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(PUT);
+        out.writeInt(id);
+        writeString(out, page.getPath());
+        writeInteger(out, page.getCode());
+        writeString(out, page.getTitle());
+        writeInteger(out, page.getContentLength());
+        writeString(out, page.getEtag());
+        writeString(out, page.getLastModified());
+        writeString(out, page.getContentHash());
+        out.writeInt(lemmaIds.length);
+        for (int lemmaId : lemmaIds) {
+            out.writeInt(lemmaId);
+        }
+        long htmlOffset = length + out.size() + Integer.BYTES;
+        writeBlob(out, html);
+        long textOffset = length + out.size() + Integer.BYTES;
+        writeBlob(out, text);
+        write(bytes.toByteArray());
+        return new StoredPage(id, page.getPath(), page.getCode(), page.getTitle(), page.getContentLength(),
+                page.getEtag(), page.getLastModified(), page.getContentHash(), lemmaIds,
+                htmlOffset, html == null ? -1 : html.length, textOffset, text == null ? -1 : text.length);
+    }
+
+    void appendDelete(int id) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES);
+        record.put(DELETE).putInt(id);
+        write(record.array());
+    }
+
+    void put(StoredPage page) {
+        pages.put(page.id(), page);
+        byPath.put(page.path(), page.id());
+    }
+
+    StoredPage remove(int id) {
+        StoredPage removed = pages.remove(id);
+        if (removed != null) {
+            byPath.remove(removed.path(), id);
+        }
+        return removed;
+    }
+
+    String readHtml(StoredPage page) throws IOException {
+        return CompressedTextConverter.decompress(readBlob(page.htmlOffset(), page.htmlLength()));
+    }
+
+    String readText(StoredPage page) throws IOException {
+        return CompressedTextConverter.decompress(readBlob(page.textOffset(), page.textLength()));
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void write(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            length += channel.write(buffer, length);
+        }
+    }
+
+    private byte[] readBlob(long offset, int blobLength) throws IOException {
+        if (blobLength < 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(blobLength);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Файл страниц " + file + " обрывается на смещении " + offset);
+            }
+        }
+        return buffer.array();
+    }
+
+    private void replay() throws IOException {
+        CountingInput counting = new CountingInput(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+        DataInputStream in = new DataInputStream(counting);
+        while (counting.count < length) {
+            byte type = in.readByte();
+            int id = in.readInt();
+            if (type == DELETE) {
+                remove(id);
+                continue;
+            }
+            if (type != PUT) {
+                throw new IOException("Повреждён файл страниц " + file + " на смещении " + (counting.count - 5));
+            }
+            String path = readString(in);
+            Integer code = readInteger(in);
+            String title = readString(in);
+            Integer contentLength = readInteger(in);
+            String etag = readString(in);
+            String lastModified = readString(in);
+            String contentHash = readString(in);
+            int[] lemmaIds = new int[in.readInt()];
+            for (int i = 0; i < lemmaIds.length; i++) {
+                lemmaIds[i] = in.readInt();
+            }
+            int htmlLength = in.readInt();
+            long htmlOffset = counting.count;
+            in.skipNBytes(Math.max(0, htmlLength));
+            int textLength = in.readInt();
+            long textOffset = counting.count;
+            in.skipNBytes(Math.max(0, textLength));
+            put(new StoredPage(id, path, code, title, contentLength, etag, lastModified, contentHash, lemmaIds,
+                    htmlOffset, htmlLength, textOffset, textLength));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBlob(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        return size < 0 ? null : new String(in.readNBytes(size), StandardCharsets.UTF_8);
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        out.writeInt(value == null ? 0 : value);
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        boolean present = in.readBoolean();
+        int value = in.readInt();
+        return present ? value : null;
+    }
+
+    private static void writeBlob(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value == null ? -1 : value.length);
+        if (value != null) {
+            out.write(value);
+        }
+    }
+
+    private static class CountingInput extends FilterInputStream {
+        private long count;
+
+        CountingInput(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
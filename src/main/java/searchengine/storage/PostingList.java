@@ -0,0 +1,71 @@
+package searchengine.storage;
+
+import java.util.Arrays;
+
+/**
+ * Индексы одной леммы в памяти: id страницы, rank и позиции в формате PositionCodec.
+ */
+final class PostingList {
+    private int[] pageIds = new int[4];
+    private float[] ranks = new float[4];
+    private byte[][] positions = new byte[4][];
+    private int size;
+
+    void add(int pageId, float rank, byte[] encodedPositions) {
+        if (size == pageIds.length) {
+            int capacity = size * 2;
+            pageIds = Arrays.copyOf(pageIds, capacity);
+            ranks = Arrays.copyOf(ranks, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        pageIds[size] = pageId;
+        ranks[size] = rank;
+        positions[size] = encodedPositions;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int pageId(int i) {
+        return pageIds[i];
+    }
+
+    float rank(int i) {
+        return ranks[i];
+    }
+
+    byte[] positions(int i) {
+        return positions[i];
+    }
+
+    /**
+     * Упорядочивает записи по id страницы. Обычно они уже идут по возрастанию, тогда сортировки нет.
+     */
+    void sortByPage() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = pageIds[i - 1] <= pageIds[i];
+        }
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(pageIds[a], pageIds[b]));
+        int[] sortedIds = new int[size];
+        float[] sortedRanks = new float[size];
+        byte[][] sortedPositions = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            sortedIds[i] = pageIds[order[i]];
+            sortedRanks[i] = ranks[order[i]];
+            sortedPositions[i] = positions[order[i]];
+        }
+        pageIds = sortedIds;
+        ranks = sortedRanks;
+        positions = sortedPositions;
+    }
+}
@@ -0,0 +1,219 @@
+package searchengine.storage;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Неизменяемый сегмент инвертированного индекса - один файл: списки индексов по леммам,
+ * затем словарь (id леммы, смещение списка) по возрастанию id, в конце смещение словаря и число лемм.
+ * Список индексов - число записей (varint), затем по записи на страницу по возрастанию id:
+ * разность id страниц (varint), rank (float), длина позиций (varint) и сами позиции в формате PositionCodec.
+ * Файл отображается в память только для чтения, поэтому сегмент читают из любых потоков,
+ * а отображение остаётся рабочим и после удаления файла слиянием.
+ */
+final class Segment {
+    private static final int MAGIC = 0x53454731;
+    private static final int FOOTER_BYTES = 12;
+
+    private final Path file;
+    private final MappedByteBuffer data;
+    private final int[] lemmaIds;
+    private final int[] offsets;
+
+    interface PostingConsumer {
+        void accept(int pageId, float rank, byte[] positions);
+    }
+
+    private Segment(Path file, MappedByteBuffer data, int[] lemmaIds, int[] offsets) {
+        this.file = file;
+        this.data = data;
+        this.lemmaIds = lemmaIds;
+        this.offsets = offsets;
+    }
+
+    static Segment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Integer.BYTES + FOOTER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Некорректный размер сегмента " + file + ": " + size);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int footer = (int) size - FOOTER_BYTES;
+            if (data.getInt(0) != MAGIC || data.getInt(footer + 8) != MAGIC) {
+                throw new IOException("Повреждён сегмент " + file);
+            }
+            int dictionaryOffset = data.getInt(footer);
+            int terms = data.getInt(footer + 4);
+            int[] lemmaIds = new int[terms];
+            int[] offsets = new int[terms];
+            for (int i = 0; i < terms; i++) {
+                lemmaIds[i] = data.getInt(dictionaryOffset + i * 8);
+                offsets[i] = data.getInt(dictionaryOffset + i * 8 + 4);
+            }
+            return new Segment(file, data, lemmaIds, offsets);
+        }
+    }
+
+    /**
+     * Переписывает индексы сегментов в один новый сегмент, оставляя только индексы страниц, для которых livePage истинно.
+     */
+    static Segment merge(Path file, List<Segment> segments, IntPredicate livePage) throws IOException {
+        int[] terms = segments.stream()
+                .flatMapToInt(segment -> Arrays.stream(segment.lemmaIds))
+                .sorted()
+                .distinct()
+                .toArray();
+        try (Writer writer = new Writer(file)) {
+            for (int lemmaId : terms) {
+                PostingList postings = new PostingList();
+                for (Segment segment : segments) {
+                    segment.read(lemmaId, (pageId, rank, positions) -> {
+                        if (livePage.test(pageId)) {
+                            postings.add(pageId, rank, positions);
+                        }
+                    });
+                }
+                writer.add(lemmaId, postings);
+            }
+            return writer.finish();
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    long sizeBytes() {
+        return data.capacity();
+    }
+
+    void read(int lemmaId, PostingConsumer consumer) {
+        int term = Arrays.binarySearch(lemmaIds, lemmaId);
+        if (term < 0) {
+            return;
+        }
+        int[] cursor = {offsets[term]};
+        int count = readVarint(cursor);
+        int pageId = 0;
+        for (int i = 0; i < count; i++) {
+            pageId += readVarint(cursor);
+            float rank = data.getFloat(cursor[0]);
+            cursor[0] += Float.BYTES;
+            int length = readVarint(cursor);
+            byte[] positions = null;
+            if (length > 0) {
+                positions = new byte[length];
+                data.get(cursor[0], positions);
+                cursor[0] += length;
+            }
+            consumer.accept(pageId, rank, positions);
+        }
+    }
+
+    private int readVarint(int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get(cursor[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Пишет сегмент во временный файл; finish() сбрасывает его на диск и атомарно переименовывает.
+     * Леммы передаются по возрастанию id.
+     */
+    static final class Writer implements Closeable {
+        private final Path file;
+        private final Path tmp;
+        private final FileOutputStream fileOut;
+        private final DataOutputStream out;
+        private int[] lemmaIds = new int[1024];
+        private int[] offsets = new int[1024];
+        private int terms;
+        private boolean finished;
+
+        Writer(Path file) throws IOException {
+            this.file = file;
+            this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.fileOut = new FileOutputStream(tmp.toFile());
+            this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+            out.writeInt(MAGIC);
+        }
+
+        void add(int lemmaId, PostingList postings) throws IOException {
+            if (postings.size() == 0) {
+                return;
+            }
+            if (terms == lemmaIds.length) {
+                lemmaIds = Arrays.copyOf(lemmaIds, terms * 2);
+                offsets = Arrays.copyOf(offsets, terms * 2);
+            }
+            lemmaIds[terms] = lemmaId;
+            offsets[terms] = out.size();
+            terms++;
+
+            postings.sortByPage();
+            writeVarint(postings.size());
+            int previous = 0;
+            for (int i = 0; i < postings.size(); i++) {
+                writeVarint(postings.pageId(i) - previous);
+                previous = postings.pageId(i);
+                out.writeFloat(postings.rank(i));
+                byte[] positions = postings.positions(i);
+                int length = positions == null ? 0 : positions.length;
+                writeVarint(length);
+                if (length > 0) {
+                    out.write(positions);
+                }
+            }
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Сегмент " + file + " больше 2 ГБ");
+            }
+        }
+
+        Segment finish() throws IOException {
+            int dictionaryOffset = out.size();
+            for (int i = 0; i < terms; i++) {
+                out.writeInt(lemmaIds[i]);
+                out.writeInt(offsets[i]);
+            }
+            out.writeInt(dictionaryOffset);
+            out.writeInt(terms);
+            out.writeInt(MAGIC);
+            out.flush();
+            fileOut.getChannel().force(true);
+            out.close();
+            finished = true;
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            return open(file);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+    }
+}
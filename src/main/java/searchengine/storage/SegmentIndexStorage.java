@@ -0,0 +1,399 @@
+package searchengine.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.config.AppConfigProperties;
+import searchengine.dto.indexing.KnownPage;
+import searchengine.dto.indexing.LemmatizedPage;
+import searchengine.dto.indexing.PageUpdate;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.SiteRepository;
+import searchengine.sitecrawling.LemmaDictionary;
+import searchengine.storage.PageStore.StoredPage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Встроенный движок хранения: инвертированный индекс из неизменяемых сегментов и журнал страниц
+ * в каталоге app.storage.dir, по подкаталогу site-{id} на поколение сайта (см. SiteIndex).
+ * Индексы копятся в памяти и пишутся сегментом, когда их набирается flushPostings,
+ * а также в конце записи сайта; сегментов у сайта не больше maxSegments, лишние сливаются.
+ * Таблица site остаётся в БД: по ней определяется текущее поколение сайта.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.storage", name = "engine", havingValue = "segment")
+public class SegmentIndexStorage implements IndexStorage {
+    private static final String SITE_PREFIX = "site-";
+
+    private final SiteRepository siteRepository;
+    private final Path dir;
+    private final int flushPostings;
+    private final int maxSegments;
+    private final Map<Integer, SiteIndex> sites = new ConcurrentHashMap<>();
+    private final AtomicInteger pageIds = new AtomicInteger(1);
+    private final AtomicInteger lemmaIds = new AtomicInteger(1);
+
+    public SegmentIndexStorage(AppConfigProperties connectionSetting, SiteRepository siteRepository) {
+        AppConfigProperties.Storage settings = connectionSetting.getStorage();
+        this.siteRepository = siteRepository;
+        this.dir = Path.of(settings.getDir());
+        this.flushPostings = Math.max(1, settings.getFlushPostings());
+        this.maxSegments = Math.max(1, settings.getMaxSegments());
+        open();
+    }
+
+    @Override
+    public SiteWriter openWriter(Site site, boolean existing, LemmaDictionary dictionary) {
+        return new SegmentSiteWriter(site(site.getId()), dictionary);
+    }
+
+    @Override
+    public void saveSite(Site site, List<Page> pages, List<Lemma> lemmas, List<Index> indexes) {
+        SiteIndex index = site(site.getId());
+        Map<Page, List<Index>> pageIndexes = new IdentityHashMap<>();
+        indexes.forEach(pageIndex -> pageIndexes.computeIfAbsent(pageIndex.getPage(), page -> new ArrayList<>()).add(pageIndex));
+        try {
+            for (Page page : pages) {
+                addPage(index, page, pageIndexes.getOrDefault(page, List.of()));
+                if (index.bufferedPostings() >= flushPostings) {
+                    commit(index);
+                }
+            }
+            commit(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сохранить сайт " + site.getUrl(), e);
+        }
+    }
+
+    @Override
+    public void replacePage(Site site, Page page, List<Lemma> lemmas, List<Index> indexes) {
+        siteRepository.save(site);
+        SiteIndex index = site(site.getId());
+        try {
+            addPage(index, page, indexes);
+            commit(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сохранить страницу " + page.getPath(), e);
+        }
+    }
+
+    @Override
+    public void replacePages(Site site, List<PageUpdate> updates) {
+        siteRepository.save(site);
+        SiteIndex index = site(site.getId());
+        try {
+            for (PageUpdate update : updates) {
+                addPage(index, update.page(), update.indexes());
+            }
+            commit(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сохранить страницы сайта " + site.getUrl(), e);
+        }
+    }
+
+    @Override
+    public boolean containsPage(Site site, String path) {
+        SiteIndex index = sites.get(site.getId());
+        return index != null && index.pageIdByPath(path) != null;
+    }
+
+    @Override
+    public List<KnownPage> findKnownPages(Site site) {
+        SiteIndex index = sites.get(site.getId());
+        if (index == null) {
+            return List.of();
+        }
+        return index.pages().stream()
+                .map(page -> new KnownPage(page.id(), page.path(), page.etag(), page.lastModified(), page.contentHash()))
+                .toList();
+    }
+
+    @Override
+    public String findHtml(Integer pageId) {
+        for (SiteIndex index : sites.values()) {
+            StoredPage page = index.page(pageId);
+            if (page != null) {
+                try {
+                    return index.readHtml(page);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Не удалось прочитать страницу " + pageId, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Map<Integer, String> findTexts(List<Integer> pageIds) {
+        Map<Integer, String> texts = new HashMap<>();
+        for (Integer pageId : pageIds) {
+            for (SiteIndex index : sites.values()) {
+                StoredPage page = index.page(pageId);
+                if (page != null) {
+                    try {
+                        texts.put(pageId, index.readText(page));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Не удалось прочитать страницу " + pageId, e);
+                    }
+                    break;
+                }
+            }
+        }
+        return texts;
+    }
+
+    @Override
+    public void deletePages(Site site, List<Integer> pageIds) {
+        SiteIndex index = sites.get(site.getId());
+        if (index == null || pageIds.isEmpty()) {
+            return;
+        }
+        try {
+            index.deletePages(pageIds);
+            commit(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось удалить страницы сайта " + site.getUrl(), e);
+        }
+    }
+
+    @Override
+    public int deleteUnusedLemmas(Site site) {
+        SiteIndex index = sites.get(site.getId());
+        if (index == null) {
+            return 0;
+        }
+        try {
+            return index.deleteUnusedLemmas();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось удалить леммы сайта " + site.getUrl(), e);
+        }
+    }
+
+    @Override
+    public void deleteSite(int siteId) {
+        long started = System.currentTimeMillis();
+        SiteIndex index = sites.remove(siteId);
+        if (index == null && !Files.isDirectory(siteDir(siteId))) {
+            return;
+        }
+        try {
+            if (index == null) {
+                index = SiteIndex.open(siteId, siteDir(siteId), pageIds, lemmaIds);
+            }
+            int pages = index.pageCount();
+            index.delete();
+            log.info("Удалены данные поколения {}: страниц {} за {} мс", siteId, pages, System.currentTimeMillis() - started);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось удалить каталог поколения " + siteId, e);
+        }
+    }
+
+    @Override
+    public List<Lemma> findLemmas(String lemma, Site site) {
+        List<Lemma> lemmas = new ArrayList<>();
+        for (Site candidate : site == null ? siteRepository.findServing() : List.of(site)) {
+            SiteIndex index = sites.get(candidate.getId());
+            SiteIndex.LemmaEntry entry = index == null ? null : index.lemma(lemma);
+            if (entry != null) {
+                Lemma found = new Lemma();
+                found.setId(entry.id);
+                found.setLemma(entry.lemma);
+                found.setFrequency(entry.frequency);
+                found.setSite(candidate);
+                lemmas.add(found);
+            }
+        }
+        return lemmas;
+    }
+
+    @Override
+    public List<Index> findPostings(List<Lemma> lemmas, boolean withPositions) {
+        List<Index> postings = new ArrayList<>();
+        Map<Integer, Page> pages = new HashMap<>();
+        for (Lemma lemma : lemmas) {
+            SiteIndex index = sites.get(lemma.getSite().getId());
+            if (index == null) {
+                continue;
+            }
+            index.forEachPosting(lemma.getId(), (stored, rank, positions) -> {
+                Index posting = new Index();
+                posting.setPage(pages.computeIfAbsent(stored.id(), id -> toPage(stored, lemma.getSite())));
+                posting.setLemma(lemma);
+                posting.setRank(rank);
+                posting.setPositions(withPositions ? positions : null);
+                postings.add(posting);
+            });
+        }
+        return postings;
+    }
+
+    @Override
+    public long countServingPages() {
+        return siteRepository.findServing().stream().mapToLong(this::countPages).sum();
+    }
+
+    @Override
+    public int countPages(Site site) {
+        SiteIndex index = sites.get(site.getId());
+        return index == null ? 0 : index.pageCount();
+    }
+
+    @Override
+    public int countLemmas(Site site) {
+        SiteIndex index = sites.get(site.getId());
+        return index == null ? 0 : index.lemmaCount();
+    }
+
+    @Override
+    public void report() {
+        sites.values().forEach(index -> log.info("Встроенное хранилище, поколение {}: страниц {}, лемм {}, сегментов {} ({} КБ)",
+                index.siteId(), index.pageCount(), index.lemmaCount(), index.segmentCount(), index.segmentBytes() / 1024));
+    }
+
+    /**
+     * Фиксирует то, что успели записать конвейеры, и закрывает файлы.
+     */
+    @PreDestroy
+    public void close() {
+        for (SiteIndex index : sites.values()) {
+            try {
+                index.commit();
+                index.close();
+            } catch (IOException e) {
+                log.error("Не удалось закрыть поколение {} встроенного хранилища: {}", index.siteId(), e.getMessage());
+            }
+        }
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> children = Files.list(dir)) {
+                for (Path child : children.filter(Files::isDirectory).toList()) {
+                    String name = child.getFileName().toString();
+                    if (!name.matches(SITE_PREFIX + "\\d+")) {
+                        continue;
+                    }
+                    int siteId = Integer.parseInt(name.substring(SITE_PREFIX.length()));
+                    SiteIndex index = SiteIndex.open(siteId, child, pageIds, lemmaIds);
+                    pageIds.accumulateAndGet(index.committedNextPageId(), Math::max);
+                    lemmaIds.accumulateAndGet(index.committedNextLemmaId(), Math::max);
+                    sites.put(siteId, index);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть встроенное хранилище " + dir, e);
+        }
+        log.info("Встроенное хранилище {}: поколений сайтов {}", dir, sites.size());
+    }
+
+    private SiteIndex site(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> {
+            try {
+                return SiteIndex.open(id, siteDir(id), pageIds, lemmaIds);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось открыть поколение " + id + " встроенного хранилища", e);
+            }
+        });
+    }
+
+    private Path siteDir(int siteId) {
+        return dir.resolve(SITE_PREFIX + siteId);
+    }
+
+    private void commit(SiteIndex index) throws IOException {
+        index.commit();
+        index.maybeMerge(maxSegments);
+    }
+
+    private static void addPage(SiteIndex index, Page page, List<Index> pageIndexes) throws IOException {
+        int[] ids = new int[pageIndexes.size()];
+        float[] ranks = new float[ids.length];
+        byte[][] positions = new byte[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            Index pageIndex = pageIndexes.get(i);
+            ids[i] = index.lemmaId(pageIndex.getLemma().getLemma());
+            ranks[i] = pageIndex.getRank();
+            positions[i] = pageIndex.getPositions();
+        }
+        index.addPage(page, ids, ranks, positions);
+    }
+
+    private static Page toPage(StoredPage stored, Site site) {
+        Page page = new Page(stored.path());
+        page.setId(stored.id());
+        page.setSite(site);
+        page.setCode(stored.code());
+        page.setTitle(stored.title());
+        page.setContentLength(stored.contentLength());
+        page.setEtag(stored.etag());
+        page.setLastModified(stored.lastModified());
+        page.setContentHash(stored.contentHash());
+        return page;
+    }
+
+    /**
+     * Запись конвейера: id лемм из словаря конвейера переводятся в id лемм сайта один раз на лемму.
+     */
+    private class SegmentSiteWriter implements SiteWriter {
+        private final SiteIndex index;
+        private final LemmaDictionary dictionary;
+        private int[] siteLemmaIds = new int[1024];
+
+        SegmentSiteWriter(SiteIndex index, LemmaDictionary dictionary) {
+            this.index = index;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public void write(List<LemmatizedPage> batch) {
+            try {
+                for (LemmatizedPage lemmatizedPage : batch) {
+                    int[] dictionaryIds = lemmatizedPage.lemmaIds();
+                    int[] ids = new int[dictionaryIds.length];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = siteLemmaId(dictionaryIds[i]);
+                    }
+                    index.addPage(lemmatizedPage.page(), ids, lemmatizedPage.ranks(), lemmatizedPage.positions());
+                }
+                if (index.bufferedPostings() >= flushPostings) {
+                    commit(index);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось записать страницы поколения " + index.siteId(), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                commit(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось зафиксировать поколение " + index.siteId(), e);
+            }
+        }
+
+        private int siteLemmaId(int dictionaryId) throws IOException {
+            if (dictionaryId >= siteLemmaIds.length) {
+                siteLemmaIds = Arrays.copyOf(siteLemmaIds, Math.max(dictionaryId + 1, siteLemmaIds.length * 2));
+            }
+            if (siteLemmaIds[dictionaryId] == 0) {
+                siteLemmaIds[dictionaryId] = index.lemmaId(dictionary.lemma(dictionaryId));
+            }
+            return siteLemmaIds[dictionaryId];
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package searchengine.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.model.Page;
+import searchengine.storage.PageStore.StoredPage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Одно поколение сайта во встроенном движке - каталог site-{id}: pages.log (PageStore),
+ * lemmas.log (id и текст лемм, только дозапись), сегменты seg-{N}.dat и манифест commit.
+ * Манифест перезаписывается атомарно и фиксирует изменения: в нём список сегментов, длины журналов
+ * и следующие свободные id. Всё, что записано после манифеста, при открытии отбрасывается.
+ * <p>
+ * Запись идёт под блокировкой объекта и копится в памяти до commit: тогда индексы пишутся новым сегментом,
+ * а новые страницы, удаления и частоты лемм становятся видны поиску. Поиск читает без блокировок.
+ * Удалённые страницы остаются в сегментах, пока их не уберёт слияние, и отсеиваются по PageStore.
+ */
+@Slf4j
+final class SiteIndex {
+    private static final String MANIFEST = "commit";
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    interface PostingVisitor {
+        void accept(StoredPage page, float rank, byte[] positions);
+    }
+
+    static final class LemmaEntry {
+        final int id;
+        final String lemma;
+        volatile int frequency;
+
+        LemmaEntry(int id, String lemma) {
+            this.id = id;
+            this.lemma = lemma;
+        }
+    }
+
+    private final int siteId;
+    private final Path dir;
+    private final AtomicInteger pageIds;
+    private final AtomicInteger lemmaIds;
+    private final Map<String, LemmaEntry> lemmasByText = new ConcurrentHashMap<>();
+    private final Map<Integer, LemmaEntry> lemmasById = new ConcurrentHashMap<>();
+    private volatile List<Segment> segments = List.of();
+    private PageStore pageStore;
+    private FileChannel lemmaLog;
+    private long lemmaLogLength;
+    private Properties manifest = new Properties();
+    private int nextSegment;
+
+    private final TreeMap<Integer, PostingList> bufferedPostings = new TreeMap<>();
+    private int bufferedCount;
+    private final List<StoredPage> pendingPages = new ArrayList<>();
+    private final List<Integer> pendingDeletes = new ArrayList<>();
+    private final Map<String, Integer> pendingPaths = new HashMap<>();
+
+    private SiteIndex(int siteId, Path dir, AtomicInteger pageIds, AtomicInteger lemmaIds) {
+        this.siteId = siteId;
+        this.dir = dir;
+        this.pageIds = pageIds;
+        this.lemmaIds = lemmaIds;
+    }
+
+    /**
+     * pageIds и lemmaIds - общие для всех сайтов счётчики id, чтобы id страниц и лемм не повторялись между сайтами.
+     */
+    static SiteIndex open(int siteId, Path dir, AtomicInteger pageIds, AtomicInteger lemmaIds) throws IOException {
+        Files.createDirectories(dir);
+        SiteIndex index = new SiteIndex(siteId, dir, pageIds, lemmaIds);
+        index.load();
+        return index;
+    }
+
+    int siteId() {
+        return siteId;
+    }
+
+    /**
+     * Следующие свободные id на момент последней фиксации.
+     */
+    int committedNextPageId() {
+        return Integer.parseInt(manifest.getProperty("nextPageId", "1"));
+    }
+
+    int committedNextLemmaId() {
+        return Integer.parseInt(manifest.getProperty("nextLemmaId", "1"));
+    }
+
+    StoredPage page(int id) {
+        return pageStore.get(id);
+    }
+
+    Integer pageIdByPath(String path) {
+        return pageStore.idByPath(path);
+    }
+
+    Collection<StoredPage> pages() {
+        return pageStore.pages();
+    }
+
+    int pageCount() {
+        return pageStore.size();
+    }
+
+    int lemmaCount() {
+        return (int) lemmasById.values().stream().filter(entry -> entry.frequency > 0).count();
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    long segmentBytes() {
+        return segments.stream().mapToLong(Segment::sizeBytes).sum();
+    }
+
+    /**
+     * Лемма, которая встречается хотя бы на одной зафиксированной странице, или null.
+     */
+    LemmaEntry lemma(String text) {
+        LemmaEntry entry = lemmasByText.get(text);
+        return entry == null || entry.frequency <= 0 ? null : entry;
+    }
+
+    String readHtml(StoredPage page) throws IOException {
+        return pageStore.readHtml(page);
+    }
+
+    String readText(StoredPage page) throws IOException {
+        return pageStore.readText(page);
+    }
+
+    void forEachPosting(int lemmaId, PostingVisitor visitor) {
+        for (Segment segment : segments) {
+            segment.read(lemmaId, (pageId, rank, positions) -> {
+                StoredPage page = pageStore.get(pageId);
+                if (page != null) {
+                    visitor.accept(page, rank, positions);
+                }
+            });
+        }
+    }
+
+    /**
+     * id леммы сайта; новая лемма сразу дописывается в lemmas.log, но видна поиску только с первой страницей.
+     */
+    synchronized int lemmaId(String text) throws IOException {
+        LemmaEntry entry = lemmasByText.get(text);
+        if (entry != null) {
+            return entry.id;
+        }
+        entry = new LemmaEntry(lemmaIds.getAndIncrement(), text);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + bytes.length);
+        record.putInt(entry.id).putInt(bytes.length).put(bytes).flip();
+        while (record.hasRemaining()) {
+            lemmaLogLength += lemmaLog.write(record, lemmaLogLength);
+        }
+        lemmasByText.put(text, entry);
+        lemmasById.put(entry.id, entry);
+        return entry.id;
+    }
+
+    /**
+     * Добавляет страницу с индексами. Прежняя версия страницы (по id или по пути) удаляется,
+     * новая получает новый id: индексы старой версии в сегментах отсеиваются, пока их не уберёт слияние.
+     */
+    synchronized void addPage(Page page, int[] pageLemmaIds, float[] ranks, byte[][] positions) throws IOException {
+        if (page.getId() != null) {
+            deletePage(page.getId());
+        }
+        Integer samePath = pendingPaths.getOrDefault(page.getPath(), pageStore.idByPath(page.getPath()));
+        if (samePath != null && !samePath.equals(page.getId())) {
+            deletePage(samePath);
+        }
+        int id = pageIds.getAndIncrement();
+        page.setId(id);
+        pendingPages.add(pageStore.append(id, page, pageLemmaIds));
+        pendingPaths.put(page.getPath(), id);
+        for (int i = 0; i < pageLemmaIds.length; i++) {
+            bufferedPostings.computeIfAbsent(pageLemmaIds[i], lemmaId -> new PostingList()).add(id, ranks[i], positions[i]);
+        }
+        bufferedCount += pageLemmaIds.length;
+    }
+
+    synchronized void deletePages(List<Integer> ids) throws IOException {
+        for (Integer id : ids) {
+            deletePage(id);
+        }
+    }
+
+    /**
+     * Удаляет из памяти леммы без страниц. В lemmas.log они остаются и после перезапуска снова невидимы (частота 0).
+     */
+    synchronized int deleteUnusedLemmas() throws IOException {
+        commit();
+        int removed = 0;
+        for (LemmaEntry entry : List.copyOf(lemmasById.values())) {
+            if (entry.frequency <= 0) {
+                lemmasById.remove(entry.id);
+                lemmasByText.remove(entry.lemma, entry);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    synchronized int bufferedPostings() {
+        return bufferedCount;
+    }
+
+    /**
+     * Фиксирует накопленное: пишет сегмент, сбрасывает журналы на диск, перезаписывает манифест
+     * и только потом применяет изменения в памяти. При ошибке состояние перечитывается с диска.
+     */
+    synchronized void commit() throws IOException {
+        if (pendingPages.isEmpty() && pendingDeletes.isEmpty() && bufferedPostings.isEmpty()
+                && lemmaLogLength == committedLength("lemmas")) {
+            return;
+        }
+        try {
+            List<Segment> next = new ArrayList<>(segments);
+            if (!bufferedPostings.isEmpty()) {
+                try (Segment.Writer writer = new Segment.Writer(nextSegmentFile())) {
+                    for (Map.Entry<Integer, PostingList> entry : bufferedPostings.entrySet()) {
+                        writer.add(entry.getKey(), entry.getValue());
+                    }
+                    next.add(writer.finish());
+                }
+            }
+            pageStore.force();
+            lemmaLog.force(false);
+            writeManifest(next, pageStore.length(), lemmaLogLength);
+
+            for (StoredPage page : pendingPages) {
+                pageStore.put(page);
+                adjustFrequencies(page.lemmaIds(), 1);
+            }
+            for (Integer id : pendingDeletes) {
+                StoredPage removed = pageStore.remove(id);
+                if (removed != null) {
+                    adjustFrequencies(removed.lemmaIds(), -1);
+                }
+            }
+            segments = List.copyOf(next);
+            clearPending();
+        } catch (IOException | RuntimeException e) {
+            log.error("Ошибка фиксации сайта {} во встроенном хранилище, состояние перечитывается с диска: {}", siteId, e.getMessage());
+            load();
+            throw e;
+        }
+    }
+
+    /**
+     * Если сегментов больше maxSegments, сливает самые маленькие в один, выбрасывая индексы удалённых страниц.
+     */
+    synchronized void maybeMerge(int maxSegments) throws IOException {
+        List<Segment> current = segments;
+        if (current.size() <= Math.max(1, maxSegments)) {
+            return;
+        }
+        List<Segment> merged = current.stream()
+                .sorted(Comparator.comparingLong(Segment::sizeBytes))
+                .limit(current.size() - Math.max(1, maxSegments) + 1L)
+                .toList();
+        long totalBytes = merged.stream().mapToLong(Segment::sizeBytes).sum();
+        if (totalBytes >= Integer.MAX_VALUE) {
+            log.warn("Сайт {}: сегменты не слиты, их суммарный размер {} байт больше 2 ГБ", siteId, totalBytes);
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Segment result = Segment.merge(nextSegmentFile(), merged, pageId -> pageStore.get(pageId) != null);
+        List<Segment> next = new ArrayList<>(current);
+        next.removeAll(merged);
+        next.add(result);
+        writeManifest(next, committedLength("pages"), committedLength("lemmas"));
+        segments = List.copyOf(next);
+        for (Segment segment : merged) {
+            Files.deleteIfExists(segment.file());
+        }
+        log.info("Сайт {}: слито сегментов {} ({} КБ -> {} КБ) за {} мс", siteId, merged.size(),
+                totalBytes / 1024, result.sizeBytes() / 1024, System.currentTimeMillis() - started);
+    }
+
+    synchronized void close() throws IOException {
+        if (pageStore != null) {
+            pageStore.close();
+        }
+        if (lemmaLog != null) {
+            lemmaLog.close();
+        }
+    }
+
+    /**
+     * Закрывает файлы и удаляет каталог сайта целиком.
+     */
+    synchronized void delete() throws IOException {
+        close();
+        segments = List.of();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private void deletePage(int id) throws IOException {
+        pageStore.appendDelete(id);
+        pendingDeletes.add(id);
+    }
+
+    private void adjustFrequencies(int[] pageLemmaIds, int delta) {
+        for (int lemmaId : pageLemmaIds) {
+            LemmaEntry entry = lemmasById.get(lemmaId);
+            if (entry != null) {
+                entry.frequency += delta;
+            }
+        }
+    }
+
+    private void clearPending() {
+        bufferedPostings.clear();
+        bufferedCount = 0;
+        pendingPages.clear();
+        pendingDeletes.clear();
+        pendingPaths.clear();
+    }
+
+    private long committedLength(String log) {
+        return Long.parseLong(manifest.getProperty(log, "0"));
+    }
+
+    private Path nextSegmentFile() {
+        return dir.resolve(SEGMENT_PREFIX + (nextSegment++) + SEGMENT_SUFFIX);
+    }
+
+    private void writeManifest(List<Segment> next, long pagesLength, long lemmasLength) throws IOException {
+        Properties updated = new Properties();
+        updated.setProperty("pages", Long.toString(pagesLength));
+        updated.setProperty("lemmas", Long.toString(lemmasLength));
+        updated.setProperty("nextPageId", Integer.toString(pageIds.get()));
+        updated.setProperty("nextLemmaId", Integer.toString(lemmaIds.get()));
+        updated.setProperty("segments", String.join(",", next.stream().map(segment -> segment.file().getFileName().toString()).toList()));
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile())) {
+            updated.store(out, "site " + siteId);
+            out.getChannel().force(true);
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        manifest = updated;
+    }
+
+    /**
+     * Открывает сайт по манифесту: журналы обрезаются до зафиксированной длины, файлы сегментов
+     * вне манифеста удаляются, частоты лемм пересчитываются по страницам.
+     */
+    private void load() throws IOException {
+        close();
+        clearPending();
+        lemmasByText.clear();
+        lemmasById.clear();
+
+        Properties loaded = new Properties();
+        Path manifestFile = dir.resolve(MANIFEST);
+        if (Files.exists(manifestFile)) {
+            try (InputStream in = Files.newInputStream(manifestFile)) {
+                loaded.load(in);
+            }
+        }
+        manifest = loaded;
+
+        pageStore = PageStore.open(dir.resolve("pages.log"), committedLength("pages"));
+        lemmaLog = FileChannel.open(dir.resolve("lemmas.log"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        lemmaLogLength = committedLength("lemmas");
+        if (lemmaLog.size() < lemmaLogLength) {
+            throw new IOException("Файл лемм сайта " + siteId + " короче зафиксированной длины " + lemmaLogLength);
+        }
+        lemmaLog.truncate(lemmaLogLength);
+        readLemmas();
+
+        List<String> names = Arrays.stream(manifest.getProperty("segments", "").split(","))
+                .filter(name -> !name.isBlank())
+                .toList();
+        List<Segment> opened = new ArrayList<>();
+        for (String name : names) {
+            opened.add(Segment.open(dir.resolve(name)));
+        }
+        segments = List.copyOf(opened);
+        nextSegment = 1;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(SEGMENT_PREFIX)) {
+                    continue;
+                }
+                if (names.contains(name)) {
+                    String number = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                    nextSegment = Math.max(nextSegment, Integer.parseInt(number) + 1);
+                } else {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        for (StoredPage page : pageStore.pages()) {
+            adjustFrequencies(page.lemmaIds(), 1);
+        }
+    }
+
+    private void readLemmas() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(lemmaLog.position(0)), 1 << 16));
+        long read = 0;
+        while (read < lemmaLogLength) {
+            int id = in.readInt();
+            byte[] bytes = in.readNBytes(in.readInt());
+            read += 2L * Integer.BYTES + bytes.length;
+            LemmaEntry entry = new LemmaEntry(id, new String(bytes, StandardCharsets.UTF_8));
+            lemmasByText.put(entry.lemma, entry);
+            lemmasById.put(id, entry);
+        }
+    }
+}
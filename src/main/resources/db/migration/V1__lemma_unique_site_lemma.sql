@@ -0,0 +1,25 @@
+-- Дубликаты (site_id, lemma), накопленные прежней индексацией отдельных страниц, сливаются в одну строку:
+-- индексы переводятся на строку с наименьшим id, частоты складываются.
+CREATE TEMPORARY TABLE lemma_duplicates AS
+SELECT site_id, lemma, MIN(id) AS keep_id, SUM(frequency) AS total
+FROM lemma
+GROUP BY site_id, lemma
+HAVING COUNT(*) > 1;
+
+UPDATE indexes i
+    JOIN lemma l ON l.id = i.lemma_id
+    JOIN lemma_duplicates d ON d.site_id = l.site_id AND d.lemma = l.lemma
+SET i.lemma_id = d.keep_id
+WHERE l.id <> d.keep_id;
+
+UPDATE lemma l
+    JOIN lemma_duplicates d ON d.keep_id = l.id
+SET l.frequency = d.total;
+
+DELETE l FROM lemma l
+    JOIN lemma_duplicates d ON d.site_id = l.site_id AND d.lemma = l.lemma
+WHERE l.id <> d.keep_id;
+
+DROP TEMPORARY TABLE lemma_duplicates;
+
+ALTER TABLE lemma ADD UNIQUE KEY uk_lemma_site_lemma (site_id, lemma);
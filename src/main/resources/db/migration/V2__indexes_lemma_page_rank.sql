@@ -0,0 +1,3 @@
+-- Поиск читает индексы по lemma_id (IndexRepository.findRanksByLemmaIdIn): page_id и rank берутся из самого индекса.
+-- Запрос с позициями (findPositionsByLemmaIdIn, больше одной леммы) всё равно читает строки таблицы.
+CREATE INDEX idx_indexes_lemma_page_rank ON indexes (lemma_id, page_id, `rank`);
@@ -0,0 +1,4 @@
+-- path - TEXT и целиком не индексируется, поэтому страница ищется по SHA-256 пути (Page.hashPath).
+UPDATE page SET path_hash = SHA2(path, 256) WHERE path_hash IS NULL AND path IS NOT NULL;
+
+CREATE INDEX idx_page_site_path_hash ON page (site_id, path_hash);
@@ -0,0 +1,13 @@
+-- requires-column: page.content
+-- HTML переносится из page в page_content. COMPRESS хранит перед потоком zlib 4 байта длины,
+-- они отрезаются - остаётся формат CompressedTextConverter. Столбец page.text есть не во всех схемах,
+-- поэтому текст переносит отдельная миграция V5.
+INSERT INTO page_content (page_id, html, text)
+SELECT p.id, SUBSTRING(COMPRESS(p.content), 5), NULL
+FROM page p
+    LEFT JOIN page_content c ON c.page_id = p.id
+WHERE c.page_id IS NULL;
+
+UPDATE page SET content_length = CHAR_LENGTH(content) WHERE content_length IS NULL;
+
+ALTER TABLE page DROP COLUMN content;
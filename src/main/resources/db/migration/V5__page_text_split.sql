@@ -0,0 +1,15 @@
+-- requires-column: page.text
+-- Текст страниц, сохранённый в page.text, переносится в page_content; в схемах без этого столбца
+-- текста у старых страниц нет, и миграция пропускается.
+INSERT INTO page_content (page_id, html, text)
+SELECT p.id, NULL, SUBSTRING(COMPRESS(p.text), 5)
+FROM page p
+    LEFT JOIN page_content c ON c.page_id = p.id
+WHERE c.page_id IS NULL;
+
+UPDATE page_content c
+    JOIN page p ON p.id = c.page_id
+SET c.text = SUBSTRING(COMPRESS(p.text), 5)
+WHERE c.text IS NULL AND p.text IS NOT NULL;
+
+ALTER TABLE page DROP COLUMN text;
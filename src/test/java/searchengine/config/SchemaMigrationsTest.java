@@ -0,0 +1,54 @@
+package searchengine.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigrationsTest {
+
+    @Test
+    void splitsStatementsAtSemicolonsAndDropsComments() {
+        String sql = """
+                -- комментарий
+                CREATE INDEX idx_a
+                    ON a (b);
+
+                UPDATE a SET b = 1;
+                DELETE FROM a""";
+
+        assertEquals(List.of("CREATE INDEX idx_a\n    ON a (b)", "UPDATE a SET b = 1", "DELETE FROM a"),
+                SchemaMigrations.statements(sql));
+    }
+
+    @Test
+    void semicolonInsideLineDoesNotSplit() {
+        assertEquals(List.of("UPDATE a SET b = ';' WHERE c = 1"), SchemaMigrations.statements("UPDATE a SET b = ';' WHERE c = 1;"));
+    }
+
+    @Test
+    void bundledMigrationsSplitIntoExpectedStatements() throws IOException {
+        assertEquals(6, SchemaMigrations.statements(resource("V1__lemma_unique_site_lemma.sql")).size());
+        assertEquals(1, SchemaMigrations.statements(resource("V2__indexes_lemma_page_rank.sql")).size());
+        assertEquals(2, SchemaMigrations.statements(resource("V3__page_site_path_hash.sql")).size());
+        List<String> v4 = SchemaMigrations.statements(resource("V4__page_content_split.sql"));
+        assertEquals(3, v4.size());
+        assertTrue(v4.get(2).startsWith("ALTER TABLE page DROP COLUMN content"));
+        assertEquals("ALTER TABLE page DROP COLUMN content", v4.get(2));
+        v4.forEach(statement -> assertFalse(statement.contains("p.text")));
+        List<String> v5 = SchemaMigrations.statements(resource("V5__page_text_split.sql"));
+        assertEquals(3, v5.size());
+        assertEquals("ALTER TABLE page DROP COLUMN text", v5.get(2));
+        v4.forEach(statement -> assertFalse(statement.contains("--")));
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = SchemaMigrationsTest.class.getResourceAsStream("/db/migration/" + name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
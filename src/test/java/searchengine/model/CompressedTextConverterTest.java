@@ -0,0 +1,53 @@
+package searchengine.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedTextConverterTest {
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+
+    @Test
+    void roundTripsTextOfAnySize() {
+        String large = "<p>Индексация страниц и поиск по леммам</p>\n".repeat(10_000);
+
+        for (String text : new String[]{"", "ёжик", large}) {
+            assertEquals(text, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(text)));
+        }
+        assertTrue(CompressedTextConverter.compress(large).length < large.length() / 4);
+    }
+
+    @Test
+    void keepsNull() {
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+
+    /**
+     * Миграция V4 переносит страницы через MySQL COMPRESS без 4 байт длины - это обычный поток zlib.
+     */
+    @Test
+    void readsZlibStreamOfOtherCompressionLevel() {
+        byte[] input = "страница из прежней схемы".getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        deflater.setInput(input);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        assertEquals("страница из прежней схемы", CompressedTextConverter.decompress(out.toByteArray()));
+    }
+
+    @Test
+    void rejectsCorruptedContent() {
+        assertThrows(IllegalStateException.class, () -> CompressedTextConverter.decompress(new byte[]{1, 2, 3, 4}));
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import searchengine.config.AppConfigProperties;
+import searchengine.repositories.SiteLeaseRepository;
+import searchengine.sitecrawling.CrawlLease;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ClusterCoordinatorTest {
+    private static final String SITE = "https://example.com";
+
+    private final SiteLeaseRepository siteLeaseRepository = mock(SiteLeaseRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private ClusterCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        AppConfigProperties properties = new AppConfigProperties();
+        properties.getCluster().setNodeId("node-a");
+        coordinator = new ClusterCoordinator(properties, siteLeaseRepository, transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.shutdown();
+    }
+
+    @Test
+    void leaseOfAnotherNodeIsTakenOver() {
+        when(siteLeaseRepository.lockOwner(SITE)).thenReturn("node-b");
+        when(siteLeaseRepository.acquire(eq(SITE), eq("node-a"), anyInt(), eq(3L))).thenReturn(1);
+
+        CrawlLease lease = coordinator.tryAcquire(SITE, 3);
+
+        assertTrue(lease.isTakenOver());
+        var order = inOrder(transactionManager, siteLeaseRepository);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(siteLeaseRepository).lockOwner(SITE);
+        order.verify(siteLeaseRepository).acquire(eq(SITE), eq("node-a"), anyInt(), eq(3L));
+        order.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void ownLeaseAfterRestartIsNotTakenOver() {
+        when(siteLeaseRepository.lockOwner(SITE)).thenReturn("node-a");
+        when(siteLeaseRepository.acquire(eq(SITE), eq("node-a"), anyInt(), anyLong())).thenReturn(1);
+
+        assertFalse(coordinator.tryAcquire(SITE, 0).isTakenOver());
+    }
+
+    @Test
+    void busyLeaseIsNotAcquired() {
+        when(siteLeaseRepository.lockOwner(SITE)).thenReturn("node-b");
+        when(siteLeaseRepository.acquire(anyString(), anyString(), anyInt(), anyLong())).thenReturn(0);
+
+        assertNull(coordinator.tryAcquire(SITE, 0));
+    }
+}
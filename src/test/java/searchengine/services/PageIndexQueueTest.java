@@ -0,0 +1,128 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import searchengine.config.AppConfigProperties;
+import searchengine.config.Sites;
+import searchengine.dto.indexing.PageTicketStatus;
+import searchengine.dto.indexing.PageUpdate;
+import searchengine.dto.indexing.ResponseIndexPage;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.SiteRepository;
+import searchengine.sitecrawling.LemmaExtraction;
+import searchengine.sitecrawling.PageFetcher;
+import searchengine.storage.IndexStorage;
+
+import java.net.ConnectException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PageIndexQueueTest {
+    private static final String SITE_URL = "https://example.com";
+
+    private final SiteRepository siteRepository = mock(SiteRepository.class);
+    private final IndexStorage indexStorage = mock(IndexStorage.class);
+    private final LemmaExtraction lemmaExtraction = mock(LemmaExtraction.class);
+    private final PageFetcher pageFetcher = mock(PageFetcher.class);
+    private final Site site = new Site();
+    private final Sites sitesConfig = new Sites();
+    private PageIndexQueue queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        site.setId(1);
+        site.setUrl(SITE_URL);
+        site.setName("example");
+        site.setError("");
+        sitesConfig.setUrl(SITE_URL);
+        sitesConfig.setName("example");
+        when(siteRepository.findByUrl(SITE_URL)).thenReturn(site);
+        when(pageFetcher.fetch(any(Page.class), anyString())).thenAnswer(invocation -> {
+            Page page = invocation.getArgument(0);
+            page.setCode(200);
+            page.setContent("<html><head><title>t</title></head><body>слово</body></html>");
+            return true;
+        });
+        when(lemmaExtraction.analyzeText(anyString())).thenReturn(Map.of("слово", new int[]{0}));
+
+        AppConfigProperties properties = new AppConfigProperties();
+        properties.getPageQueue().setLingerMs(0);
+        queue = new PageIndexQueue(properties, siteRepository, indexStorage, lemmaExtraction, pageFetcher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    void writtenPageReachesIndexed() throws Exception {
+        ResponseIndexPage submitted = queue.submit(SITE_URL + "/a", sitesConfig);
+        assertEquals(PageTicketStatus.QUEUED, submitted.getStatus());
+
+        assertTrue(queue.await(List.of(submitted.getTicket()), 10_000));
+
+        ResponseIndexPage status = queue.status(submitted.getTicket());
+        assertEquals(PageTicketStatus.INDEXED, status.getStatus());
+        assertNull(status.getError());
+        assertTrue(status.isResult());
+        assertEquals("", site.getError());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PageUpdate>> updates = ArgumentCaptor.forClass(List.class);
+        verify(indexStorage).replacePages(eq(site), updates.capture());
+        assertEquals("/a", updates.getValue().get(0).page().getPath());
+        assertEquals(1, updates.getValue().get(0).indexes().size());
+    }
+
+    @Test
+    void failedWriteMarksTicketFailed() throws Exception {
+        doThrow(new IllegalStateException("нет связи с БД")).when(indexStorage).replacePages(any(), anyList());
+
+        ResponseIndexPage submitted = queue.submit(SITE_URL + "/b", sitesConfig);
+        assertTrue(queue.await(List.of(submitted.getTicket()), 10_000));
+
+        ResponseIndexPage status = queue.status(submitted.getTicket());
+        assertEquals(PageTicketStatus.FAILED, status.getStatus());
+        assertEquals("нет связи с БД", status.getError());
+        assertEquals("нет связи с БД", site.getError());
+    }
+
+    @Test
+    void failedFetchKeepsStoredPage() throws Exception {
+        when(pageFetcher.fetch(any(Page.class), anyString())).thenThrow(new ConnectException());
+
+        ResponseIndexPage submitted = queue.submit(SITE_URL + "/d", sitesConfig);
+        assertTrue(queue.await(List.of(submitted.getTicket()), 10_000));
+
+        ResponseIndexPage status = queue.status(submitted.getTicket());
+        assertEquals(PageTicketStatus.FAILED, status.getStatus());
+        assertEquals("java.net.ConnectException", status.getError());
+        verify(indexStorage, never()).replacePages(any(), anyList());
+    }
+
+    /**
+     * Пачка забирается из очереди только после lingerMs, поэтому второй адрес гарантированно застаёт первый в очереди.
+     */
+    @Test
+    void pendingUrlIsCoalesced() {
+        AppConfigProperties properties = new AppConfigProperties();
+        properties.getPageQueue().setLingerMs(60_000);
+        PageIndexQueue lingering = new PageIndexQueue(properties, siteRepository, indexStorage, lemmaExtraction, pageFetcher);
+        try {
+            ResponseIndexPage first = lingering.submit(SITE_URL + "/c", sitesConfig);
+            ResponseIndexPage second = lingering.submit(SITE_URL + "/c", sitesConfig);
+            assertEquals(first.getTicket(), second.getTicket());
+            assertEquals(1, lingering.pendingCount());
+        } finally {
+            lingering.shutdown();
+        }
+    }
+}
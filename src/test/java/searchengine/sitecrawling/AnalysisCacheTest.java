@@ -0,0 +1,56 @@
+package searchengine.sitecrawling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.config.AppConfigProperties;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisCacheTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void reusesEntryOfSameAnalyzerVersionAcrossRestarts() {
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, Map<String, int[]>> analyzer = analyzer(calls, "старый");
+
+        new AnalysisCache(properties()).get("текст", "v1", analyzer);
+        Map<String, int[]> lemmas = new AnalysisCache(properties()).get("текст", "v1", analyzer);
+
+        assertEquals(1, calls.get());
+        assertArrayEquals(new int[]{0, 2}, lemmas.get("старый"));
+    }
+
+    @Test
+    void recomputesEntryOfOtherAnalyzerVersion() {
+        AtomicInteger calls = new AtomicInteger();
+        new AnalysisCache(properties()).get("текст", "v1", analyzer(calls, "старый"));
+
+        AnalysisCache cache = new AnalysisCache(properties());
+        Map<String, int[]> lemmas = cache.get("текст", "v2", analyzer(calls, "новый"));
+
+        assertEquals(2, calls.get());
+        assertTrue(lemmas.containsKey("новый"));
+        assertTrue(cache.get("текст", "v2", analyzer(calls, "третий")).containsKey("новый"));
+        assertEquals(2, calls.get());
+    }
+
+    private AppConfigProperties properties() {
+        AppConfigProperties properties = new AppConfigProperties();
+        properties.getAnalysisCache().setDir(dir.toString());
+        return properties;
+    }
+
+    private static Function<String, Map<String, int[]>> analyzer(AtomicInteger calls, String lemma) {
+        return text -> {
+            calls.incrementAndGet();
+            return Map.of(lemma, new int[]{0, 2});
+        };
+    }
+}
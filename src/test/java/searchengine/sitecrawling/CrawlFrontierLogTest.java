@@ -0,0 +1,61 @@
+package searchengine.sitecrawling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlFrontierLogTest {
+    private static final String SITE = "https://example.com";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void resumeKeepsOnlyPendingLinks() throws Exception {
+        CrawlFrontierLog log = CrawlFrontierLog.open(dir, SITE, false);
+        log.enqueued(SITE + "/", 0);
+        log.enqueued(SITE + "/a", 1);
+        log.enqueued(SITE + "/b", 1);
+        log.done(SITE + "/");
+        log.done(SITE + "/a");
+        log.close();
+
+        CrawlFrontierLog resumed = CrawlFrontierLog.open(dir, SITE, true);
+        assertEquals(Map.of(SITE + "/b", 1), resumed.getPending());
+        List<String> done = new ArrayList<>();
+        resumed.forEachDone(done::add);
+        assertEquals(List.of(SITE + "/", SITE + "/a"), done);
+
+        resumed.done(SITE + "/b");
+        done.clear();
+        resumed.forEachDone(done::add);
+        assertEquals(List.of(SITE + "/", SITE + "/a", SITE + "/b"), done);
+        resumed.close();
+
+        try (CrawlFrontierLog finished = CrawlFrontierLog.open(dir, SITE, true)) {
+            assertTrue(finished.getPending().isEmpty());
+        }
+    }
+
+    @Test
+    void openWithoutResumeDropsPreviousLog() throws Exception {
+        CrawlFrontierLog log = CrawlFrontierLog.open(dir, SITE, false);
+        log.enqueued(SITE + "/a", 1);
+        log.close();
+
+        CrawlFrontierLog fresh = CrawlFrontierLog.open(dir, SITE, false);
+        List<String> done = new ArrayList<>();
+        fresh.forEachDone(done::add);
+        assertTrue(done.isEmpty());
+        fresh.close();
+        try (CrawlFrontierLog finished = CrawlFrontierLog.open(dir, SITE, true)) {
+            assertTrue(finished.getPending().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package searchengine.sitecrawling;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.AppConfigProperties;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostSchedulerTest {
+    private static final URI PAGE = URI.create("https://example.com/private/page");
+
+    @Test
+    void loadsRobotsOnceOutsideHostMap() throws Exception {
+        HostScheduler scheduler = new HostScheduler(new AppConfigProperties());
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        Function<URI, RobotsRules> slowLoader = uri -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return RobotsRules.parse("User-agent: *\nDisallow: /private", "HeliontAgent");
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = executor.submit(() -> scheduler.isAllowed(PAGE, slowLoader));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<Boolean> second = executor.submit(() -> scheduler.isAllowed(PAGE, slowLoader));
+
+            // другой хост не ждёт загрузки robots.txt первого
+            assertTrue(scheduler.isAllowed(URI.create("https://other.example/private"), uri -> RobotsRules.ALLOW_ALL));
+
+            release.countDown();
+            assertFalse(first.get(5, TimeUnit.SECONDS));
+            assertFalse(second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void reloadsRobotsAfterTtl() {
+        AppConfigProperties properties = new AppConfigProperties();
+        properties.getPoliteness().setRobotsTtlMinutes(0);
+        HostScheduler scheduler = new HostScheduler(properties);
+
+        assertFalse(scheduler.isAllowed(PAGE, uri -> RobotsRules.DISALLOW_ALL));
+        assertTrue(scheduler.isAllowed(PAGE, uri -> RobotsRules.ALLOW_ALL));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package searchengine.sitecrawling;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.AppConfigProperties;
+import searchengine.dto.indexing.LemmatizedPage;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.storage.IndexStorage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IndexingPipelineTest {
+    private final LemmaExtraction lemmaExtraction = mock(LemmaExtraction.class);
+    private final IndexStorage indexStorage = mock(IndexStorage.class);
+    private final Site site = new Site();
+
+    @Test
+    void writesAllSubmittedPages() {
+        List<String> written = new CopyOnWriteArrayList<>();
+        when(indexStorage.openWriter(any(), anyBoolean(), any()))
+                .thenReturn(batch -> batch.forEach(page -> written.add(page.page().getPath())));
+
+        IndexingPipeline pipeline = pipeline();
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(new Page("/" + i));
+        }
+        pipeline.finish();
+
+        assertNull(pipeline.getFailure());
+        assertEquals(10, written.size());
+    }
+
+    @Test
+    void writeErrorIsReportedAndLaterBatchesAreSkipped() {
+        List<List<LemmatizedPage>> attempts = new CopyOnWriteArrayList<>();
+        when(indexStorage.openWriter(any(), anyBoolean(), any())).thenReturn(batch -> {
+            attempts.add(List.copyOf(batch));
+            throw new IllegalStateException("Duplicate entry");
+        });
+
+        IndexingPipeline pipeline = pipeline();
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(new Page("/" + i));
+        }
+        pipeline.finish();
+
+        assertTrue(pipeline.isFailed());
+        assertEquals("Duplicate entry", pipeline.getFailure().getMessage());
+        assertEquals(1, attempts.size());
+    }
+
+    private IndexingPipeline pipeline() {
+        site.setName("example");
+        site.setUrl("https://example.com");
+        AppConfigProperties.Pipeline settings = new AppConfigProperties.Pipeline();
+        settings.setBatchSize(2);
+        settings.setLemmaWorkers(2);
+        return new IndexingPipeline(site, lemmaExtraction, indexStorage, settings, null, false);
+    }
+}
@@ -0,0 +1,28 @@
+package searchengine.sitecrawling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionCodecTest {
+
+    @Test
+    void roundTripsPositionsWithLargeGaps() {
+        int[] positions = {0, 1, 127, 128, 16_383, 16_384, 2_097_152, Integer.MAX_VALUE};
+
+        assertArrayEquals(positions, PositionCodec.decode(PositionCodec.encode(positions)));
+    }
+
+    @Test
+    void smallGapsTakeOneByteEach() {
+        assertEquals(4, PositionCodec.encode(new int[]{3, 10, 20, 147}).length);
+        assertEquals(2, PositionCodec.encode(new int[]{200}).length);
+    }
+
+    @Test
+    void missingPositionsDecodeToEmptyArray() {
+        assertEquals(0, PositionCodec.decode(null).length);
+        assertEquals(0, PositionCodec.decode(new byte[0]).length);
+        assertEquals(0, PositionCodec.encode(new int[0]).length);
+    }
+}
@@ -0,0 +1,104 @@
+package searchengine.sitecrawling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotsRulesTest {
+
+    @Test
+    void picksLongestGroupMatchingProductToken() {
+        String robots = """
+                User-agent: heliont
+                Disallow: /short
+
+                User-agent: HeliontAgent
+                Disallow: /long
+
+                User-agent: *
+                Disallow: /
+                """;
+
+        RobotsRules rules = RobotsRules.parse(robots, "HeliontAgent/1.0 (+https://example.com/bot)");
+
+        assertFalse(rules.isAllowed("/long/page"));
+        assertTrue(rules.isAllowed("/short/page"));
+    }
+
+    @Test
+    void ignoresAgentsMentionedOnlyInsideUserAgentComment() {
+        String robots = """
+                User-agent: example
+                Disallow: /
+
+                User-agent: *
+                Disallow: /private
+                """;
+
+        RobotsRules rules = RobotsRules.parse(robots, "HeliontAgent/1.0 (+https://example.com/bot)");
+
+        assertTrue(rules.isAllowed("/page"));
+        assertFalse(rules.isAllowed("/private/page"));
+    }
+
+    @Test
+    void longestRuleWinsAndAllowWinsTies() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /docs
+                Allow: /docs/public
+                Disallow: /same
+                Allow: /same
+                """, "HeliontAgent");
+
+        assertFalse(rules.isAllowed("/docs/private"));
+        assertTrue(rules.isAllowed("/docs/public/page"));
+        assertTrue(rules.isAllowed("/same"));
+        assertTrue(rules.isAllowed("/other"));
+    }
+
+    @Test
+    void supportsWildcardsAndEndAnchor() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /search*q=
+                """, "HeliontAgent");
+
+        assertFalse(rules.isAllowed("/files/report.pdf"));
+        assertTrue(rules.isAllowed("/files/report.pdf?download=1"));
+        assertFalse(rules.isAllowed("/search?page=2&q=кот"));
+        assertTrue(rules.isAllowed("/search?page=2"));
+    }
+
+    @Test
+    void readsCrawlDelayCommentsAndSharedGroups() {
+        RobotsRules rules = RobotsRules.parse("""
+                # общий блок для двух агентов
+                User-agent: other
+                User-agent: heliontagent
+                Crawl-delay: 2.5 # секунды
+                Disallow: /tmp # временные файлы
+                Disallow:
+                """, "HeliontAgent/1.0");
+
+        assertEquals(2.5, rules.getCrawlDelaySeconds());
+        assertFalse(rules.isAllowed("/tmp/file"));
+        assertTrue(rules.isAllowed("/"));
+    }
+
+    @Test
+    void missingGroupAllowsEverything() {
+        RobotsRules rules = RobotsRules.parse("User-agent: other\nDisallow: /\nCrawl-delay: oops", "HeliontAgent");
+
+        assertTrue(rules.isAllowed("/page"));
+        assertEquals(0, rules.getCrawlDelaySeconds());
+    }
+
+    @Test
+    void productTokenStopsAtVersionOrSpace() {
+        assertEquals("heliontagent", RobotsRules.productToken("HeliontAgent/1.0 (+url)"));
+        assertEquals("heliontagent", RobotsRules.productToken("HeliontAgent"));
+        assertEquals("", RobotsRules.productToken(null));
+    }
+}
@@ -0,0 +1,100 @@
+package searchengine.sitecrawling;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.AppConfigProperties;
+import searchengine.config.Sites;
+import searchengine.config.SitesList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SitemapReaderTest {
+    private final PageFetcher pageFetcher = mock(PageFetcher.class);
+    private SitemapReader reader;
+
+    @BeforeEach
+    void setUp() {
+        Sites site = new Sites();
+        site.setUrl("https://example.com/");
+        SitesList sitesList = new SitesList();
+        sitesList.setSites(List.of(site));
+        AppConfigProperties properties = new AppConfigProperties();
+        properties.getPageQueue().setMaxSitemapSizeMb(1);
+        reader = new SitemapReader(pageFetcher, sitesList, properties);
+    }
+
+    @Test
+    void readsUrlsOfNestedSitemapsOnConfiguredHosts() throws IOException {
+        answer("https://example.com/sitemap.xml", """
+                <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <sitemap><loc>https://example.com/pages.xml.gz</loc></sitemap>
+                  <sitemap><loc>http://169.254.169.254/latest/meta-data</loc></sitemap>
+                </sitemapindex>""".getBytes(StandardCharsets.UTF_8));
+        answer("https://example.com/pages.xml.gz", gzip("""
+                <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <url><loc> https://example.com/a </loc></url>
+                  <url><loc>https://example.com/b</loc></url>
+                </urlset>""".getBytes(StandardCharsets.UTF_8)));
+
+        Set<String> urls = reader.read("https://example.com/sitemap.xml", 100);
+
+        assertEquals(List.of("https://example.com/a", "https://example.com/b"), List.copyOf(urls));
+        verify(pageFetcher, never()).fetchBytes(eq("http://169.254.169.254/latest/meta-data"), anyInt());
+    }
+
+    @Test
+    void rejectsSitemapOutsideConfiguredSites() throws IOException {
+        assertThrows(IOException.class, () -> reader.read("http://localhost:8080/sitemap.xml", 100));
+        verify(pageFetcher, never()).fetchBytes(anyString(), anyInt());
+    }
+
+    @Test
+    void rejectsSitemapThatInflatesPastLimit() throws IOException {
+        answer("https://example.com/bomb.xml.gz", gzip(new byte[2 * 1024 * 1024]));
+
+        IOException error = assertThrows(IOException.class, () -> reader.read("https://example.com/bomb.xml.gz", 100));
+        assertTrue(error.getMessage().contains("больше"));
+    }
+
+    @Test
+    void stopsAtLimit() throws IOException {
+        answer("https://example.com/sitemap.xml", """
+                <urlset>
+                  <url><loc>https://example.com/a</loc></url>
+                  <url><loc>https://example.com/b</loc></url>
+                  <url><loc>https://example.com/c</loc></url>
+                </urlset>""".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, reader.read("https://example.com/sitemap.xml", 2).size());
+    }
+
+    @Test
+    void hostOfAcceptsOnlyHttp() {
+        assertEquals("example.com", SitemapReader.hostOf("HTTPS://Example.COM/x"));
+        assertEquals("", SitemapReader.hostOf("file:///etc/passwd"));
+        assertEquals("", SitemapReader.hostOf("not a url"));
+    }
+
+    private void answer(String url, byte[] body) throws IOException {
+        when(pageFetcher.fetchBytes(eq(url), anyInt())).thenReturn(body);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
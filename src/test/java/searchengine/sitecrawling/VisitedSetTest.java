@@ -0,0 +1,58 @@
+package searchengine.sitecrawling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitedSetTest {
+
+    @Test
+    void fingerprintSetGrowsUpToBudget() {
+        FingerprintVisitedSet set = new FingerprintVisitedSet(1 << 14);
+        assertTrue(set.slots() < 1 << 14);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(set.addIfAbsent("https://example.com/page/" + i));
+        }
+
+        assertEquals(1 << 14, set.slots());
+        assertFalse(set.addIfAbsent("https://example.com/page/42"));
+        assertTrue(set.contains("https://example.com/page/9999"));
+        assertFalse(set.isTruncated());
+    }
+
+    @Test
+    void fingerprintSetMarksOverflowAsTruncated() {
+        FingerprintVisitedSet set = new FingerprintVisitedSet(1 << 10);
+
+        int added = 0;
+        for (int i = 0; i < 2_000; i++) {
+            if (set.addIfAbsent("https://example.com/page/" + i)) {
+                added++;
+            }
+        }
+
+        assertEquals((int) ((1 << 10) * 0.9), added);
+        assertTrue(set.isTruncated());
+    }
+
+    @Test
+    void bloomSetAllocatesLazilyAndMarksOverflow() {
+        long budgetBits = 1L << 20;
+        BloomVisitedSet set = new BloomVisitedSet(budgetBits, 7);
+        assertTrue(set.allocatedBits() < budgetBits);
+
+        for (int i = 0; i < 20_000; i++) {
+            set.addIfAbsent("https://example.com/page/" + i);
+        }
+        assertFalse(set.isTruncated());
+        assertTrue(set.contains("https://example.com/page/0"));
+        assertFalse(set.addIfAbsent("https://example.com/page/19999"));
+
+        for (int i = 20_000; i < 200_000; i++) {
+            set.addIfAbsent("https://example.com/page/" + i);
+        }
+        assertTrue(set.isTruncated());
+        assertTrue(set.allocatedBits() <= budgetBits);
+    }
+}
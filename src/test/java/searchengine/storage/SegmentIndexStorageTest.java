@@ -0,0 +1,149 @@
+package searchengine.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.config.AppConfigProperties;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.SiteRepository;
+import searchengine.sitecrawling.PositionCodec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SegmentIndexStorageTest {
+    @TempDir
+    Path dir;
+
+    private final SiteRepository siteRepository = mock(SiteRepository.class);
+    private final Site site = site(7);
+
+    @Test
+    void savedSiteIsReadBackAfterReopen() {
+        SegmentIndexStorage storage = storage(200_000, 8);
+        Page cats = page("/cats", "<p>кот и кот</p>", "кот и кот");
+        Page dogs = page("/dogs", "<p>пёс и кот</p>", "пёс и кот");
+        List<Index> indexes = List.of(
+                index(cats, "кот", 2f, 0, 2),
+                index(dogs, "пес", 1f, 0),
+                index(dogs, "кот", 1f, 2));
+        storage.saveSite(site, List.of(cats, dogs), List.of(), indexes);
+        storage.close();
+
+        SegmentIndexStorage reopened = storage(200_000, 8);
+
+        assertEquals(2, reopened.countPages(site));
+        assertEquals(2, reopened.countLemmas(site));
+        List<Lemma> lemmas = reopened.findLemmas("кот", site);
+        assertEquals(1, lemmas.size());
+        assertEquals(2, lemmas.get(0).getFrequency());
+
+        Map<String, Index> postings = reopened.findPostings(lemmas, true).stream()
+                .collect(Collectors.toMap(posting -> posting.getPage().getPath(), posting -> posting));
+        assertEquals(Set.of("/cats", "/dogs"), postings.keySet());
+        assertEquals(2f, postings.get("/cats").getRank());
+        assertArrayEquals(new int[]{0, 2}, PositionCodec.decode(postings.get("/cats").getPositions()));
+        assertArrayEquals(new int[]{2}, PositionCodec.decode(postings.get("/dogs").getPositions()));
+
+        assertEquals("<p>пёс и кот</p>", reopened.findHtml(dogs.getId()));
+        assertEquals(Map.of(cats.getId(), "кот и кот"), reopened.findTexts(List.of(cats.getId(), -1)));
+
+        Page birds = page("/birds", "<p>птица</p>", "птица");
+        reopened.replacePage(site, birds, List.of(), List.of(index(birds, "птица", 1f, 0)));
+        assertTrue(birds.getId() > Math.max(cats.getId(), dogs.getId()));
+    }
+
+    @Test
+    void replacedPagesAreMergedAndOldVersionsDropped() throws IOException {
+        SegmentIndexStorage storage = storage(1, 1);
+        Page first = page("/a", "<p>кот</p>", "кот");
+        storage.replacePage(site, first, List.of(), List.of(index(first, "кот", 1f, 0)));
+        Page other = page("/b", "<p>кот</p>", "кот");
+        storage.replacePage(site, other, List.of(), List.of(index(other, "кот", 1f, 0)));
+        Page second = page("/a", "<p>пёс</p>", "пёс");
+        storage.replacePage(site, second, List.of(), List.of(index(second, "пес", 3f, 0)));
+
+        assertEquals(2, storage.countPages(site));
+        assertEquals(1, segmentFiles());
+        assertEquals(1, storage.findLemmas("кот", site).get(0).getFrequency());
+        List<Index> dogPostings = storage.findPostings(storage.findLemmas("пес", site), true);
+        assertEquals(1, dogPostings.size());
+        assertEquals(second.getId(), dogPostings.get(0).getPage().getId());
+
+        storage.deletePages(site, List.of(other.getId()));
+        assertTrue(storage.findLemmas("кот", site).isEmpty());
+        assertEquals(1, storage.deleteUnusedLemmas(site));
+        storage.close();
+
+        SegmentIndexStorage reopened = storage(1, 1);
+        assertEquals(1, reopened.countPages(site));
+        assertTrue(reopened.findLemmas("кот", site).isEmpty());
+        assertEquals(3f, reopened.findPostings(reopened.findLemmas("пес", site), false).get(0).getRank());
+        verify(siteRepository, times(3)).save(site);
+    }
+
+    @Test
+    void deletedSiteLeavesNoFiles() {
+        SegmentIndexStorage storage = storage(200_000, 8);
+        Page page = page("/a", "<p>кот</p>", "кот");
+        storage.replacePage(site, page, List.of(), List.of(index(page, "кот", 1f, 0)));
+
+        storage.deleteSite(site.getId());
+
+        assertFalse(Files.exists(dir.resolve("site-" + site.getId())));
+        assertEquals(0, storage.countPages(site));
+    }
+
+    private SegmentIndexStorage storage(int flushPostings, int maxSegments) {
+        AppConfigProperties properties = new AppConfigProperties();
+        properties.getStorage().setDir(dir.toString());
+        properties.getStorage().setFlushPostings(flushPostings);
+        properties.getStorage().setMaxSegments(maxSegments);
+        return new SegmentIndexStorage(properties, siteRepository);
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("site-" + site.getId()))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("seg-")).count();
+        }
+    }
+
+    private static Site site(int id) {
+        Site site = new Site();
+        site.setId(id);
+        site.setUrl("https://example.com");
+        site.setName("Пример");
+        return site;
+    }
+
+    private Page page(String path, String html, String text) {
+        Page page = new Page(path);
+        page.setSite(site);
+        page.setCode(200);
+        page.setContent(html);
+        page.setText(text);
+        page.setContentLength(html.length());
+        return page;
+    }
+
+    private Index index(Page page, String text, float rank, int... positions) {
+        Lemma lemma = new Lemma();
+        lemma.setLemma(text);
+        lemma.setSite(site);
+        Index index = new Index();
+        index.setPage(page);
+        index.setLemma(lemma);
+        index.setRank(rank);
+        index.setPositions(PositionCodec.encode(positions));
+        return index;
+    }
+}
@@ -0,0 +1,45 @@
+package searchengine.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void writtenPostingsAreReadBackSortedByPage() throws IOException {
+        PostingList postings = new PostingList();
+        postings.add(300, 3f, new byte[]{1, 2});
+        postings.add(5, 1.5f, null);
+        Segment segment;
+        try (Segment.Writer writer = new Segment.Writer(dir.resolve("seg-1.dat"))) {
+            writer.add(10, postings);
+            writer.add(20, new PostingList());
+            segment = writer.finish();
+        }
+
+        List<String> read = new ArrayList<>();
+        segment.read(10, (pageId, rank, positions) -> read.add(pageId + ":" + rank + ":" + (positions == null ? "-" : positions.length)));
+
+        assertEquals(List.of("5:1.5:-", "300:3.0:2"), read);
+        segment.read(20, (pageId, rank, positions) -> fail("пустой список не записывается"));
+        assertFalse(Files.exists(dir.resolve("seg-1.dat.tmp")));
+    }
+
+    @Test
+    void corruptedSegmentIsRejected() throws IOException {
+        Path file = dir.resolve("seg-1.dat");
+        Files.write(file, new byte[32]);
+
+        assertThrows(IOException.class, () -> Segment.open(file));
+    }
+}
@@ -0,0 +1,73 @@
+package searchengine.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import searchengine.model.Page;
+import searchengine.sitecrawling.PositionCodec;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SiteIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void uncommittedChangesAreDiscardedOnReopen() throws IOException {
+        SiteIndex index = SiteIndex.open(1, dir, new AtomicInteger(1), new AtomicInteger(1));
+        int cat = index.lemmaId("кот");
+        index.addPage(page("/a"), new int[]{cat}, new float[]{1f}, new byte[][]{PositionCodec.encode(new int[]{0})});
+        index.commit();
+        int dog = index.lemmaId("пес");
+        index.addPage(page("/b"), new int[]{dog}, new float[]{1f}, new byte[][]{PositionCodec.encode(new int[]{0})});
+        index.close();
+
+        SiteIndex reopened = SiteIndex.open(1, dir, new AtomicInteger(1), new AtomicInteger(1));
+
+        assertEquals(1, reopened.pageCount());
+        assertNotNull(reopened.pageIdByPath("/a"));
+        assertNull(reopened.pageIdByPath("/b"));
+        assertEquals(1, reopened.lemma("кот").frequency);
+        assertNull(reopened.lemma("пес"));
+        assertEquals(2, reopened.committedNextPageId());
+        assertEquals("<p>/a</p>", reopened.readHtml(reopened.page(reopened.pageIdByPath("/a"))));
+        reopened.close();
+    }
+
+    @Test
+    void mergeKeepsPostingsOfLivePagesOnly() throws IOException {
+        SiteIndex index = SiteIndex.open(1, dir, new AtomicInteger(1), new AtomicInteger(1));
+        int cat = index.lemmaId("кот");
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Page page = page("/" + i);
+            index.addPage(page, new int[]{cat}, new float[]{i}, new byte[][]{PositionCodec.encode(new int[]{i})});
+            index.commit();
+            ids.add(page.getId());
+        }
+        assertEquals(3, index.segmentCount());
+        index.deletePages(List.of(ids.get(1)));
+        index.commit();
+
+        index.maybeMerge(1);
+
+        assertEquals(1, index.segmentCount());
+        List<Integer> pages = new ArrayList<>();
+        index.forEachPosting(cat, (page, rank, positions) -> pages.add(page.id()));
+        assertEquals(List.of(ids.get(0), ids.get(2)), pages);
+        index.close();
+    }
+
+    private static Page page(String path) {
+        Page page = new Page(path);
+        page.setCode(200);
+        page.setContent("<p>" + path + "</p>");
+        page.setText(path);
+        return page;
+    }
+}